@@ -1,6 +1,78 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+
+// Starts the dashboard. With --serve [port] the HTTP API (CalorieHttpServer) runs too,
+// over the dashboard's profiles; with -Djava.awt.headless=true only the API runs.
 public class App {
     public static void main(String[] args) {
-        javax.swing.SwingUtilities.invokeLater(() -> new Dashboard().setVisible(true));
+        StartupTimer.mark("main");
+        Metrics.startExport();
+        int port = servePort(args);
+        if (port >= 0 && Boolean.getBoolean("java.awt.headless")) {
+            serveHeadless(port);
+            return;
+        }
+        EdtWatchdog.install(); // Before the first event, so every dispatch is timed
+        javax.swing.SwingUtilities.invokeLater(() -> {
+            Dashboard dashboard = new Dashboard();
+            dashboard.setVisible(true);
+            if (port >= 0) {
+                ProfileStore profiles = dashboard.getProfiles();
+                new Thread(() -> startServer(profiles, port), "calorie-api-start").start(); // Binding is kept off the EDT
+            }
+        });
+    }
+
+    // The port after --serve, the default port if none is given, or -1 without --serve.
+    // Exits with a usage message if the port is not a number from 0 to 65535.
+    private static int servePort(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--serve")) {
+                if (i + 1 == args.length) {
+                    return CalorieHttpServer.DEFAULT_PORT;
+                }
+                try {
+                    int port = Integer.parseInt(args[i + 1]);
+                    if (port >= 0 && port <= 65535) {
+                        return port;
+                    }
+                } catch (NumberFormatException e) {
+                    // Falls through to the usage message
+                }
+                System.out.println("Invalid port: " + args[i + 1]);
+                System.out.println("Usage: java -jar CalorieTracker.jar [--serve [port]]  (port 0-65535, default "
+                    + CalorieHttpServer.DEFAULT_PORT + ")");
+                System.exit(2);
+            }
+        }
+        return -1;
     }
-}
 
+    private static CalorieHttpServer startServer(ProfileStore profiles, int port) {
+        try {
+            CalorieHttpServer server = new CalorieHttpServer(profiles, new InetSocketAddress(port));
+            server.start();
+            System.out.println("Calorie API listening on port " + server.getPort());
+            return server;
+        } catch (IOException e) {
+            System.out.println("Error starting the calorie API: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void serveHeadless(int port) {
+        DayRolloverScheduler rolloverScheduler = DayRolloverScheduler.fromSystemProperties();
+        ProfileStore profiles = new ProfileStore(Paths.get(""), Integer.getInteger("calorie.maxProfiles", 16),
+            CalorieEngine.DEFAULT_CALORIE_GOAL, rolloverScheduler.getClock(), profile -> state -> { });
+        CalorieHttpServer server = startServer(profiles, port);
+        if (server == null) {
+            System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            profiles.close();
+        }));
+        rolloverScheduler.start(profiles::rollover);
+    }
+}
@@ -0,0 +1,38 @@
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.AbstractListModel;
+
+// List model behind the Progress panel's BMI history, oldest first. A new measurement
+// fires a single-row insert instead of rebuilding the list.
+public class BmiHistoryModel extends AbstractListModel<BmiMeasurement> {
+    private final List<BmiMeasurement> measurements = new ArrayList<>();
+
+    public void add(BmiMeasurement measurement) {
+        measurements.add(measurement);
+        int row = measurements.size() - 1;
+        fireIntervalAdded(this, row, row);
+    }
+
+    // Replaces the whole history, e.g. after loading it or switching profiles.
+    public void setAll(List<BmiMeasurement> latest) {
+        int oldSize = measurements.size();
+        measurements.clear();
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        measurements.addAll(latest);
+        if (!latest.isEmpty()) {
+            fireIntervalAdded(this, 0, latest.size() - 1);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return measurements.size();
+    }
+
+    @Override
+    public BmiMeasurement getElementAt(int index) {
+        return measurements.get(index);
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Append-only time series of BMI measurements, ordered by timestamp.
+// The file is a 4-byte header followed by fixed 20-byte records (timestamp, height,
+// weight, BMI), so loading is one read and a torn last record is simply cut off. In
+// memory each field is its own column; range queries binary-search the timestamps.
+public class BmiHistoryStore {
+    private static final int MAGIC = 0x43414C42; // "CALB"
+    private static final int RECORD_SIZE = 20;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Path path;
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private float[] heights = new float[INITIAL_CAPACITY];
+    private float[] weights = new float[INITIAL_CAPACITY];
+    private float[] bmis = new float[INITIAL_CAPACITY];
+    private int size;
+
+    private BmiHistoryStore(Path path) {
+        this.path = path;
+    }
+
+    public static BmiHistoryStore load(Path path) throws IOException {
+        IoGuard.checkNotOnEdt("load " + path);
+        BmiHistoryStore store = new BmiHistoryStore(path);
+        if (!Files.exists(path)) {
+            return store;
+        }
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (fc.size() < 4) {
+                fc.truncate(0); // Crashed before the header made it to disk
+                return store;
+            }
+            ByteBuffer data = ByteBuffer.allocate((int) fc.size());
+            while (data.hasRemaining() && fc.read(data) >= 0) {
+                // Read the whole file; 20 bytes per measurement
+            }
+            data.flip();
+            if (data.getInt() != MAGIC) {
+                throw new IOException("Not a BMI history: " + path);
+            }
+            while (data.remaining() >= RECORD_SIZE) {
+                store.append(data.getLong(), data.getFloat(), data.getFloat(), data.getFloat());
+            }
+            if (data.remaining() > 0) {
+                fc.truncate(data.position()); // Torn last record
+            }
+        }
+        return store;
+    }
+
+    // Appends and syncs one measurement. Timestamps earlier than the last one (a clock
+    // set back) are moved up to it, so the series stays sorted.
+    public BmiMeasurement append(BmiMeasurement m) throws IOException {
+        IoGuard.checkNotOnEdt("append " + path);
+        long timestamp = size > 0 ? Math.max(m.getTimestamp(), timestamps[size - 1]) : m.getTimestamp();
+        boolean needsHeader = !Files.exists(path) || Files.size(path) == 0;
+        ByteBuffer out = ByteBuffer.allocate(4 + RECORD_SIZE);
+        if (needsHeader) {
+            out.putInt(MAGIC);
+        }
+        out.putLong(timestamp).putFloat(m.getHeightCm()).putFloat(m.getWeightKg()).putFloat(m.getBmi()).flip();
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            while (out.hasRemaining()) {
+                fc.write(out);
+            }
+            fc.force(false);
+        }
+        append(timestamp, m.getHeightCm(), m.getWeightKg(), m.getBmi());
+        return get(size - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public BmiMeasurement get(int index) {
+        return new BmiMeasurement(timestamps[index], heights[index], weights[index], bmis[index]);
+    }
+
+    // Measurements with fromMillis <= timestamp < toMillis, oldest first.
+    public List<BmiMeasurement> range(long fromMillis, long toMillis) {
+        int from = lowerBound(fromMillis);
+        int to = Math.max(from, lowerBound(toMillis));
+        List<BmiMeasurement> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(get(i));
+        }
+        return result;
+    }
+
+    public List<BmiMeasurement> all() {
+        return range(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // First index whose timestamp is >= millis.
+    private int lowerBound(long millis) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestamps[mid] < millis) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private void append(long timestamp, float height, float weight, float bmi) {
+        if (size == timestamps.length) {
+            int capacity = size * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+            bmis = Arrays.copyOf(bmis, capacity);
+        }
+        timestamps[size] = timestamp;
+        heights[size] = height;
+        weights[size] = weight;
+        bmis[size] = bmi;
+        size++;
+    }
+}
@@ -0,0 +1,46 @@
+import java.text.DecimalFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+// One BMI calculation: the height and weight entered and the resulting BMI. Immutable.
+public final class BmiMeasurement {
+    private static final DateTimeFormatter DISPLAY_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final long timestamp;
+    private final float heightCm;
+    private final float weightKg;
+    private final float bmi;
+
+    public BmiMeasurement(long timestamp, float heightCm, float weightKg, float bmi) {
+        this.timestamp = timestamp;
+        this.heightCm = heightCm;
+        this.weightKg = weightKg;
+        this.bmi = bmi;
+    }
+
+    // Epoch milliseconds when the measurement was taken.
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public float getHeightCm() {
+        return heightCm;
+    }
+
+    public float getWeightKg() {
+        return weightKg;
+    }
+
+    public float getBmi() {
+        return bmi;
+    }
+
+    @Override
+    public String toString() {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        DecimalFormat df = new DecimalFormat("#.##");
+        return DISPLAY_TIME.format(time) + ": BMI " + df.format(bmi) + " (" + df.format(weightKg) + " kg)";
+    }
+}
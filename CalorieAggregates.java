@@ -0,0 +1,172 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// Range statistics over the daily totals, kept up to date as days change.
+// A bottom-up segment tree over epoch days stores, per node, the number of recorded days,
+// their sum, min, max and how many are over the calorie goal. Any date range is answered
+// by combining O(log n) nodes and a changed day updates O(log n) nodes; only a new goal
+// (rare) recounts the days over it in one O(n) pass.
+public final class CalorieAggregates {
+    private static final int MIN_CAPACITY = 64;
+
+    // Statistics for one date range; min and max are 0 when no day in it has a record.
+    public static final class Stats {
+        public final int days;
+        public final long sum;
+        public final int min;
+        public final int max;
+        public final int daysOverGoal;
+
+        Stats(int days, long sum, int min, int max, int daysOverGoal) {
+            this.days = days;
+            this.sum = sum;
+            this.min = days == 0 ? 0 : min;
+            this.max = days == 0 ? 0 : max;
+            this.daysOverGoal = daysOverGoal;
+        }
+
+        public double mean() {
+            return days == 0 ? 0 : (double) sum / days;
+        }
+    }
+
+    private long baseDay;
+    private int leaves; // Power of two; leaf i is day baseDay + i
+    private int[] values; // Per leaf, EMPTY when the day has no record
+    private int[] count;
+    private long[] sum;
+    private int[] min;
+    private int[] max;
+    private int[] over;
+    private double goal;
+
+    public CalorieAggregates(CalorieSeries series, double calorieGoal) {
+        this.goal = calorieGoal;
+        if (series.isEmpty()) {
+            baseDay = LocalDate.now().toEpochDay();
+            allocate(MIN_CAPACITY);
+        } else {
+            baseDay = series.firstDay();
+            allocate(Math.max(MIN_CAPACITY, (int) (series.lastDay() - series.firstDay()) + 1));
+            series.forEach((epochDay, calories) -> values[(int) (epochDay - baseDay)] = calories);
+        }
+        rebuild();
+    }
+
+    public void update(LocalDate date, int calories) {
+        update(date.toEpochDay(), calories);
+    }
+
+    public void update(long epochDay, int calories) {
+        if (epochDay < baseDay || epochDay >= baseDay + leaves) {
+            grow(epochDay);
+        }
+        int i = (int) (epochDay - baseDay);
+        values[i] = calories;
+        setLeaf(i);
+        for (int node = (i + leaves) >> 1; node >= 1; node >>= 1) {
+            combine(node);
+        }
+    }
+
+    public void setGoal(double calorieGoal) {
+        if (calorieGoal != goal) {
+            goal = calorieGoal;
+            rebuild();
+        }
+    }
+
+    public Stats query(LocalDate from, LocalDate to) {
+        return query(from.toEpochDay(), to.toEpochDay());
+    }
+
+    // Statistics for the inclusive range [fromDay, toDay].
+    public Stats query(long fromDay, long toDay) {
+        long lo = Math.max(fromDay, baseDay) - baseDay;
+        long hi = Math.min(toDay, baseDay + leaves - 1) - baseDay;
+        int days = 0;
+        long total = 0;
+        int lowest = Integer.MAX_VALUE;
+        int highest = Integer.MIN_VALUE;
+        int overGoal = 0;
+        if (lo <= hi) {
+            // Standard bottom-up walk over the half-open leaf range [l, r)
+            for (int l = (int) lo + leaves, r = (int) hi + 1 + leaves; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) {
+                    days += count[l];
+                    total += sum[l];
+                    lowest = Math.min(lowest, min[l]);
+                    highest = Math.max(highest, max[l]);
+                    overGoal += over[l];
+                    l++;
+                }
+                if ((r & 1) == 1) {
+                    r--;
+                    days += count[r];
+                    total += sum[r];
+                    lowest = Math.min(lowest, min[r]);
+                    highest = Math.max(highest, max[r]);
+                    overGoal += over[r];
+                }
+            }
+        }
+        return new Stats(days, total, lowest, highest, overGoal);
+    }
+
+    private void allocate(int days) {
+        leaves = Integer.highestOneBit(Math.max(1, days - 1)) << 1;
+        values = new int[leaves];
+        Arrays.fill(values, CalorieSeries.EMPTY);
+        count = new int[2 * leaves];
+        sum = new long[2 * leaves];
+        min = new int[2 * leaves];
+        max = new int[2 * leaves];
+        over = new int[2 * leaves];
+    }
+
+    // Re-centres the tree so epochDay fits, doubling until it does.
+    private void grow(long epochDay) {
+        long newBase = Math.min(baseDay, epochDay);
+        long newEnd = Math.max(baseDay + leaves, epochDay + 1);
+        int[] old = values;
+        long oldBase = baseDay;
+        int capacity = leaves;
+        while (capacity < newEnd - newBase) {
+            capacity *= 2;
+        }
+        baseDay = newBase;
+        allocate(capacity);
+        System.arraycopy(old, 0, values, (int) (oldBase - newBase), old.length);
+        rebuild();
+    }
+
+    private void rebuild() {
+        for (int i = 0; i < leaves; i++) {
+            setLeaf(i);
+        }
+        for (int node = leaves - 1; node >= 1; node--) {
+            combine(node);
+        }
+    }
+
+    private void setLeaf(int i) {
+        int node = i + leaves;
+        int v = values[i];
+        boolean recorded = v != CalorieSeries.EMPTY;
+        count[node] = recorded ? 1 : 0;
+        sum[node] = recorded ? v : 0;
+        min[node] = recorded ? v : Integer.MAX_VALUE;
+        max[node] = recorded ? v : Integer.MIN_VALUE;
+        over[node] = recorded && v > goal ? 1 : 0;
+    }
+
+    private void combine(int node) {
+        int l = 2 * node;
+        int r = l + 1;
+        count[node] = count[l] + count[r];
+        sum[node] = sum[l] + sum[r];
+        min[node] = Math.min(min[l], min[r]);
+        max[node] = Math.max(max[l], max[r]);
+        over[node] = over[l] + over[r];
+    }
+}
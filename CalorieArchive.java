@@ -0,0 +1,359 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Compact, read-only archive of a profile's daily totals and food entries for long-term
+// retention. Records are grouped into blocks of up to BLOCK_RECORDS; inside a block days
+// and timestamps are delta-encoded varints, calories are zig-zag varint deltas and food
+// names are a per-block dictionary, and each block is deflated on its own. A block index
+// at the end of the file holds every block's key range, so a range scan inflates only
+// the blocks it overlaps.
+//
+// Layout: "CALA" version | block* | index | indexOffset(long) blockCount(int) "CALA"
+// Index entry: kind(byte) firstKey(long) lastKey(long) records(int) offset(long) length(int) crc(int)
+public final class CalorieArchive {
+    private static final int MAGIC = 0x43414C41; // "CALA"
+    private static final int VERSION = 1;
+    private static final int BLOCK_RECORDS = 4096;
+    private static final int INDEX_ENTRY_SIZE = 1 + 8 + 8 + 4 + 8 + 4 + 4;
+    private static final int FOOTER_SIZE = 8 + 4 + 4;
+
+    static final byte DAYS = 1;
+    static final byte FOOD_ENTRIES = 2;
+
+    private static final class Block {
+        final byte kind;
+        final long firstKey;
+        final long lastKey;
+        final int records;
+        final long offset;
+        final int length;
+        final int crc;
+
+        Block(byte kind, long firstKey, long lastKey, int records, long offset, int length, int crc) {
+            this.kind = kind;
+            this.firstKey = firstKey;
+            this.lastKey = lastKey;
+            this.records = records;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    private final Path path;
+    private final Block[] blocks;
+    private int blocksInflated; // Read by tests to check that scans skip blocks outside their range
+
+    private CalorieArchive(Path path, Block[] blocks) {
+        this.path = path;
+        this.blocks = blocks;
+    }
+
+    // Writes an archive of every recorded day and food entry; replaces target atomically.
+    public static void write(Path target, CalorieSeries days, List<FoodEntry> entries) throws IOException {
+        IoGuard.checkNotOnEdt("write " + target);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        List<Block> index = new ArrayList<>();
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try {
+                writeFully(out, ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip());
+
+                long[] blockDays = new long[BLOCK_RECORDS];
+                int[] blockCalories = new int[BLOCK_RECORDS];
+                int[] n = {0};
+                IOException[] failure = {null};
+                days.forEach((epochDay, calories) -> {
+                    blockDays[n[0]] = epochDay;
+                    blockCalories[n[0]++] = calories;
+                    if (n[0] == BLOCK_RECORDS && failure[0] == null) {
+                        try {
+                            index.add(writeDayBlock(out, deflater, blockDays, blockCalories, n[0]));
+                        } catch (IOException e) {
+                            failure[0] = e;
+                        }
+                        n[0] = 0;
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+                if (n[0] > 0) {
+                    index.add(writeDayBlock(out, deflater, blockDays, blockCalories, n[0]));
+                }
+
+                int size = entries.size();
+                for (int from = 0; from < size; from += BLOCK_RECORDS) {
+                    index.add(writeFoodBlock(out, deflater, entries, from, Math.min(size, from + BLOCK_RECORDS)));
+                }
+
+                long indexOffset = out.position();
+                ByteBuffer footer = ByteBuffer.allocate(index.size() * INDEX_ENTRY_SIZE + FOOTER_SIZE);
+                for (Block b : index) {
+                    footer.put(b.kind).putLong(b.firstKey).putLong(b.lastKey).putInt(b.records)
+                          .putLong(b.offset).putInt(b.length).putInt(b.crc);
+                }
+                footer.putLong(indexOffset).putInt(index.size()).putInt(MAGIC).flip();
+                writeFully(out, footer);
+                out.force(true);
+            } finally {
+                deflater.end();
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Reads only the footer and block index.
+    public static CalorieArchive open(Path path) throws IOException {
+        IoGuard.checkNotOnEdt("open " + path);
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < 8 + FOOTER_SIZE) {
+                throw new IOException("Not a calorie archive: " + path);
+            }
+            ByteBuffer footer = readFully(in, size - FOOTER_SIZE, FOOTER_SIZE);
+            long indexOffset = footer.getLong();
+            int count = footer.getInt();
+            if (footer.getInt() != MAGIC || indexOffset < 8 || indexOffset + (long) count * INDEX_ENTRY_SIZE != size - FOOTER_SIZE) {
+                throw new IOException("Not a calorie archive or truncated: " + path);
+            }
+            ByteBuffer header = readFully(in, 0, 8);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Unsupported calorie archive: " + path);
+            }
+            ByteBuffer data = readFully(in, indexOffset, count * INDEX_ENTRY_SIZE);
+            Block[] blocks = new Block[count];
+            for (int i = 0; i < count; i++) {
+                blocks[i] = new Block(data.get(), data.getLong(), data.getLong(), data.getInt(),
+                    data.getLong(), data.getInt(), data.getInt());
+            }
+            return new CalorieArchive(path, blocks);
+        }
+    }
+
+    public int blockCount() {
+        return blocks.length;
+    }
+
+    int blocksInflated() {
+        return blocksInflated;
+    }
+
+    // Passes every archived day in [fromDay, toDay] to consumer, in date order.
+    public void scanDays(long fromDay, long toDay, DayConsumer consumer) throws IOException {
+        IoGuard.checkNotOnEdt("scan " + path);
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (Block block : blocks) {
+                if (block.kind != DAYS || block.lastKey < fromDay || block.firstKey > toDay) {
+                    continue;
+                }
+                blocksInflated++;
+                ByteBuffer data = inflate(in, block);
+                long day = block.firstKey;
+                int calories = 0;
+                for (int i = 0; i < block.records; i++) {
+                    day += i == 0 ? 0 : readVarLong(data);
+                    calories += (int) unzigzag(readVarLong(data));
+                    if (day >= fromDay && day <= toDay) {
+                        consumer.accept(day, calories);
+                    }
+                }
+            }
+        }
+    }
+
+    // Passes every archived food entry logged in [fromMillis, toMillis] to consumer, in log order.
+    public void scanFoodEntries(long fromMillis, long toMillis, Consumer<FoodEntry> consumer) throws IOException {
+        IoGuard.checkNotOnEdt("scan " + path);
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (Block block : blocks) {
+                if (block.kind != FOOD_ENTRIES || block.lastKey < fromMillis || block.firstKey > toMillis) {
+                    continue;
+                }
+                blocksInflated++;
+                ByteBuffer data = inflate(in, block);
+                List<String> names = new ArrayList<>();
+                long timestamp = 0;
+                int calories = 0;
+                for (int i = 0; i < block.records; i++) {
+                    timestamp += unzigzag(readVarLong(data));
+                    calories += (int) unzigzag(readVarLong(data));
+                    int nameId = (int) readVarLong(data);
+                    if (nameId == names.size()) {
+                        byte[] name = new byte[(int) readVarLong(data)];
+                        data.get(name);
+                        names.add(new String(name, StandardCharsets.UTF_8));
+                    }
+                    float protein = data.getFloat();
+                    float carbs = data.getFloat();
+                    float fat = data.getFloat();
+                    float portion = data.getFloat();
+                    if (timestamp >= fromMillis && timestamp <= toMillis) {
+                        consumer.accept(new FoodEntry(timestamp, names.get(nameId), calories, protein, carbs, fat, portion));
+                    }
+                }
+            }
+        }
+    }
+
+    private static Block writeDayBlock(FileChannel out, Deflater deflater, long[] days, int[] calories, int n)
+            throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(n * 3);
+        int previous = 0;
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                writeVarLong(raw, days[i] - days[i - 1]); // Days are ascending, so deltas are >= 1
+            }
+            writeVarLong(raw, zigzag(calories[i] - previous));
+            previous = calories[i];
+        }
+        return writeBlock(out, deflater, DAYS, days[0], days[n - 1], n, raw);
+    }
+
+    private static Block writeFoodBlock(FileChannel out, Deflater deflater, List<FoodEntry> entries, int from, int to)
+            throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream((to - from) * 24);
+        Map<String, Integer> names = new HashMap<>();
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        long previousTimestamp = 0; // The first row stores its full timestamp
+        int previousCalories = 0;
+        byte[] floats = new byte[16];
+        for (int row = from; row < to; row++) {
+            FoodEntry entry = entries.get(row);
+            // Log order is usually time order, but a changed clock can step back, so deltas are signed
+            writeVarLong(raw, zigzag(entry.getTimestamp() - previousTimestamp));
+            writeVarLong(raw, zigzag(entry.getCalories() - previousCalories));
+            Integer nameId = names.get(entry.getName());
+            if (nameId == null) {
+                writeVarLong(raw, names.size());
+                byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+                writeVarLong(raw, name.length);
+                raw.write(name, 0, name.length);
+                names.put(entry.getName(), names.size());
+            } else {
+                writeVarLong(raw, nameId);
+            }
+            ByteBuffer.wrap(floats).putFloat(entry.getProtein()).putFloat(entry.getCarbs())
+                .putFloat(entry.getFat()).putFloat(entry.getPortionGrams());
+            raw.write(floats, 0, floats.length);
+            previousTimestamp = entry.getTimestamp();
+            previousCalories = entry.getCalories();
+            minTimestamp = Math.min(minTimestamp, entry.getTimestamp());
+            maxTimestamp = Math.max(maxTimestamp, entry.getTimestamp());
+        }
+        return writeBlock(out, deflater, FOOD_ENTRIES, minTimestamp, maxTimestamp, to - from, raw);
+    }
+
+    private static Block writeBlock(FileChannel out, Deflater deflater, byte kind, long firstKey, long lastKey,
+            int records, ByteArrayOutputStream raw) throws IOException {
+        byte[] input = raw.toByteArray();
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        byte[] compressed = new byte[Math.max(64, input.length + input.length / 100 + 64)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(compressed, 0, length);
+        long offset = out.position();
+        writeFully(out, ByteBuffer.wrap(compressed, 0, length));
+        return new Block(kind, firstKey, lastKey, records, offset, length, (int) crc.getValue());
+    }
+
+    private static ByteBuffer inflate(FileChannel in, Block block) throws IOException {
+        ByteBuffer compressed = readFully(in, block.offset, block.length);
+        CRC32 crc = new CRC32();
+        crc.update(compressed.array(), 0, block.length);
+        if ((int) crc.getValue() != block.crc) {
+            throw new IOException("Corrupt archive block at offset " + block.offset);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array(), 0, block.length);
+            byte[] out = new byte[Math.max(256, block.length * 4)];
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                int n = inflater.inflate(out, length, out.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated archive block at offset " + block.offset);
+                }
+                length += n;
+            }
+            return ByteBuffer.wrap(out, 0, length);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive block at offset " + block.offset, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel in, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of archive");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+// Headless batch job over many users' records. Every subdirectory of the input directory
+// is one user's data directory (as written by the app); each is opened with its own
+// CalorieEngine and summarized into one CSV row; with an archive directory each user is
+// also written to <archive-dir>/<user>.cala (see CalorieArchive). Runs without a display:
+//
+//   java -Djava.awt.headless=true -cp CalorieTracker.jar CalorieBatch <users-dir> [summary.csv] [archive-dir]
+public class CalorieBatch {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: CalorieBatch <users-dir> [summary.csv] [archive-dir]");
+            System.exit(2);
+        }
+        Path usersDir = Paths.get(args[0]);
+        Path out = Paths.get(args.length > 1 ? args[1] : "calorie-summary.csv");
+        Path archiveDir = args.length > 2 ? Files.createDirectories(Paths.get(args[2])) : null;
+
+        List<Path> users = new ArrayList<>();
+        try (Stream<Path> dirs = Files.list(usersDir)) {
+            dirs.filter(Files::isDirectory).sorted().forEach(users::add);
+        }
+
+        // Each engine has its own I/O thread, so a small pool keeps the disk busy
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        List<Future<String>> rows = new ArrayList<>();
+        for (Path user : users) {
+            rows.add(pool.submit(() -> summarize(user, archiveDir)));
+        }
+        int failed = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(out)) {
+            writer.append("user,days,total_kcal,average_kcal,last_day,last_kcal\n");
+            for (int i = 0; i < rows.size(); i++) {
+                try {
+                    writer.append(rows.get(i).get());
+                } catch (Exception e) {
+                    failed++;
+                    System.out.println("Error processing " + users.get(i) + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println("Summarized " + (users.size() - failed) + " of " + users.size() + " users into " + out);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static String summarize(Path userDir, Path archiveDir) {
+        try (CalorieEngine engine = new CalorieEngine(userDir)) {
+            CalorieSeries records = engine.load().join();
+            if (archiveDir != null) {
+                engine.exportArchive(archiveDir.resolve(userDir.getFileName() + ".cala")).join();
+            }
+            long[] total = new long[1];
+            records.forEach((epochDay, calories) -> total[0] += calories);
+            int days = records.size();
+            String lastDay = days == 0 ? "" : LocalDate.ofEpochDay(records.lastDay()).toString();
+            String lastCalories = days == 0 ? "" : String.valueOf(records.get(records.lastDay()));
+            return String.format(Locale.ROOT, "%s,%d,%d,%.1f,%s,%s%n", userDir.getFileName(), days, total[0],
+                days == 0 ? 0.0 : (double) total[0] / days, lastDay, lastCalories);
+        }
+    }
+}
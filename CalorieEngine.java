@@ -0,0 +1,175 @@
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Headless core of the calorie tracker: one user's records, today's food log and goal,
+// plus the BMI and energy-needs math. Dashboard is a view over an engine; batch jobs
+// create engines directly. Nothing here touches AWT or Swing, so a JVM that only uses
+// the engine never loads them.
+public class CalorieEngine implements Closeable {
+    public static final double DEFAULT_CALORIE_GOAL = 2000;
+
+    private final CaloriePersistence persistence;
+    private final CalorieStateModel model;
+
+    public CalorieEngine(Path directory) {
+        this(directory, DEFAULT_CALORIE_GOAL, Clock.systemDefaultZone());
+    }
+
+    public CalorieEngine(Path directory, double calorieGoal, Clock clock) {
+        this(directory, ProfileStore.DEFAULT_PROFILE, calorieGoal, clock);
+    }
+
+    // profile names the user's rows when the storage is a shared database (see CalorieStorage).
+    public CalorieEngine(Path directory, String profile, double calorieGoal, Clock clock) {
+        this.persistence = new CaloriePersistence(directory, profile);
+        this.model = new CalorieStateModel(persistence, calorieGoal, clock);
+    }
+
+    // Completes with a copy of the daily totals; later changes arrive through listeners.
+    public CompletableFuture<CalorieSeries> load() {
+        return model.load();
+    }
+
+    public CompletableFuture<CalorieSeries> copyRecords() {
+        return model.copyRecords();
+    }
+
+    public CompletableFuture<CalorieSeries> range(LocalDate from, LocalDate to) {
+        return model.range(from, to);
+    }
+
+    public CalorieState current() {
+        return model.current();
+    }
+
+    public void addListener(CalorieStateModel.Listener listener) {
+        model.addListener(listener);
+    }
+
+    public CompletableFuture<CalorieState> logFood(FoodEntry entry) {
+        return model.addFood(entry);
+    }
+
+    public CompletableFuture<CalorieState> clearLog() {
+        return model.clearLog();
+    }
+
+    public CompletableFuture<CalorieState> setGoal(double calorieGoal) {
+        return model.setGoal(calorieGoal);
+    }
+
+    public CompletableFuture<CalorieState> rollover(LocalDate newDay) {
+        return model.rollover(newDay);
+    }
+
+    public CompletableFuture<CsvImporter.Result> importRecords(Path csv, CsvImporter.Mapping mapping,
+            CsvImporter.ProgressListener progress) {
+        return model.importRecords(csv, mapping, progress);
+    }
+
+    // Computes the BMI and appends it to the profile's BMI history.
+    public CompletableFuture<BmiMeasurement> recordMeasurement(double heightCm, double weightKg) {
+        BmiMeasurement m = new BmiMeasurement(System.currentTimeMillis(), (float) heightCm, (float) weightKg,
+            (float) bmi(weightKg, heightCm));
+        return model.recordMeasurement(m);
+    }
+
+    // The state as it was at atMillis, replayed from the event log; null before the first event.
+    public CompletableFuture<CalorieState> stateAt(long atMillis) {
+        return model.stateAt(atMillis);
+    }
+
+    // The state at the end of day in the local time zone.
+    public CompletableFuture<CalorieState> stateOn(LocalDate day) {
+        return stateAt(day.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() - 1);
+    }
+
+    // Every logged change with fromMillis <= timestamp <= toMillis, oldest first.
+    public CompletableFuture<List<CalorieEvent>> events(long fromMillis, long toMillis) {
+        return model.events(fromMillis, toMillis);
+    }
+
+    public CompletableFuture<List<BmiMeasurement>> bmiHistory(long fromMillis, long toMillis) {
+        return persistence.loadMeasurements(fromMillis, toMillis);
+    }
+
+    public CompletableFuture<List<BmiMeasurement>> bmiHistory() {
+        return bmiHistory(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // Total calories per food for entries logged in [fromMillis, toMillis), largest first.
+    public CompletableFuture<Map<String, Long>> caloriesByFood(long fromMillis, long toMillis) {
+        return persistence.caloriesByFood(fromMillis, toMillis);
+    }
+
+    // Food entry calories per day in [from, to], per 7-day week from from, and per calendar
+    // month from the given month.
+    public CompletableFuture<int[]> dailyFoodCalories(LocalDate from, LocalDate to) {
+        return persistence.dailyFoodCalories(from, to);
+    }
+
+    public CompletableFuture<int[]> weeklyFoodCalories(LocalDate from, int weeks) {
+        return persistence.weeklyFoodCalories(from, weeks);
+    }
+
+    public CompletableFuture<int[]> monthlyFoodCalories(YearMonth from, int months) {
+        return persistence.monthlyFoodCalories(from, months);
+    }
+
+    // Entry count, calories and macros of the food entries logged in [from, to].
+    public CompletableFuture<FoodEntryStore.NutrientTotals> nutrientTotals(LocalDate from, LocalDate to) {
+        return persistence.nutrientTotals(from, to);
+    }
+
+    public CompletableFuture<Void> exportCsv(Path target) {
+        return model.exportCsv(target);
+    }
+
+    public CompletableFuture<Void> exportArchive(Path target) {
+        return model.exportArchive(target);
+    }
+
+    public Path getRecordsCsv() {
+        return model.getRecordsCsv();
+    }
+
+    // Waits for queued changes to be written, then closes the stores.
+    @Override
+    public void close() {
+        model.close();
+    }
+
+    public static double bmi(double weightKg, double heightCm) {
+        double height = heightCm / 100; // Convert cm to meters
+        return weightKg / (height * height);
+    }
+
+    // Basal metabolic rate using the Mifflin-St Jeor equation.
+    public static double bmr(boolean male, double weightKg, double heightCm, int age) {
+        double base = 10 * weightKg + 6.25 * heightCm - 5 * age;
+        return male ? base + 5 : base - 161;
+    }
+
+    public static double activityMultiplier(String activityLevel) {
+        return switch (activityLevel) {
+            case "Sedentary" -> 1.2;
+            case "Light" -> 1.375;
+            case "Moderate" -> 1.55;
+            case "Active" -> 1.725;
+            case "Very Active" -> 1.9;
+            default -> 1.2;
+        };
+    }
+
+    // Daily calorie needs (TDEE): BMR scaled by the activity level.
+    public static double dailyCalorieNeeds(boolean male, double weightKg, double heightCm, int age, String activityLevel) {
+        return bmr(male, weightKg, heightCm, age) * activityMultiplier(activityLevel);
+    }
+}
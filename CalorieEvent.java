@@ -0,0 +1,117 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+// One recorded change to a profile's calorie state, as kept in the CalorieEventLog. Every
+// event carries when it happened and the day the state is on afterwards; the rest depends
+// on the type. Immutable.
+public final class CalorieEvent {
+    public static final byte FOOD_ADDED = 1;
+    public static final byte LOG_CLEARED = 2;
+    public static final byte GOAL_CHANGED = 3;
+    public static final byte BMI_COMPUTED = 4;
+    public static final byte DAY_ROLLED = 5;
+    public static final byte TOTAL_SET = 6; // Today's total taken from the records, e.g. after an import
+
+    private static final DateTimeFormatter DISPLAY_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final byte type;
+    private final long timestamp;
+    private final long epochDay;
+    private final int calories;
+    private final double goal;
+    private final FoodEntry entry;
+    private final BmiMeasurement measurement;
+
+    private CalorieEvent(byte type, long timestamp, long epochDay, int calories, double goal, FoodEntry entry,
+            BmiMeasurement measurement) {
+        this.type = type;
+        this.timestamp = timestamp;
+        this.epochDay = epochDay;
+        this.calories = calories;
+        this.goal = goal;
+        this.entry = entry;
+        this.measurement = measurement;
+    }
+
+    public static CalorieEvent foodAdded(long timestamp, LocalDate day, FoodEntry entry) {
+        return new CalorieEvent(FOOD_ADDED, timestamp, day.toEpochDay(), entry.getCalories(), 0, entry, null);
+    }
+
+    public static CalorieEvent logCleared(long timestamp, LocalDate day) {
+        return new CalorieEvent(LOG_CLEARED, timestamp, day.toEpochDay(), 0, 0, null, null);
+    }
+
+    public static CalorieEvent goalChanged(long timestamp, LocalDate day, double goal) {
+        return new CalorieEvent(GOAL_CHANGED, timestamp, day.toEpochDay(), 0, goal, null, null);
+    }
+
+    public static CalorieEvent bmiComputed(LocalDate day, BmiMeasurement measurement) {
+        return new CalorieEvent(BMI_COMPUTED, measurement.getTimestamp(), day.toEpochDay(), 0, 0, null, measurement);
+    }
+
+    public static CalorieEvent dayRolled(long timestamp, LocalDate newDay) {
+        return new CalorieEvent(DAY_ROLLED, timestamp, newDay.toEpochDay(), 0, 0, null, null);
+    }
+
+    public static CalorieEvent totalSet(long timestamp, LocalDate day, int calories) {
+        return new CalorieEvent(TOTAL_SET, timestamp, day.toEpochDay(), calories, 0, null, null);
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    // Epoch milliseconds when the change was made.
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    // FOOD_ADDED: the entry's calories; TOTAL_SET: the new total.
+    public int getCalories() {
+        return calories;
+    }
+
+    // GOAL_CHANGED only.
+    public double getGoal() {
+        return goal;
+    }
+
+    // FOOD_ADDED only.
+    public FoodEntry getEntry() {
+        return entry;
+    }
+
+    // BMI_COMPUTED only.
+    public BmiMeasurement getMeasurement() {
+        return measurement;
+    }
+
+    @Override
+    public String toString() {
+        String time = DISPLAY_TIME.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()));
+        String day = LocalDate.ofEpochDay(epochDay).toString();
+        switch (type) {
+            case FOOD_ADDED:
+                return time + " " + day + " food added: " + entry;
+            case LOG_CLEARED:
+                return time + " " + day + " log cleared";
+            case GOAL_CHANGED:
+                return time + " " + day + " goal set to " + Math.round(goal) + " kcal";
+            case BMI_COMPUTED:
+                return time + " " + day + " BMI computed: " + measurement;
+            case DAY_ROLLED:
+                return time + " day rolled to " + day;
+            case TOTAL_SET:
+                return time + " " + day + " total set to " + calories + " kcal";
+            default:
+                return time + " " + day + " unknown event " + type;
+        }
+    }
+}
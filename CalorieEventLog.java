@@ -0,0 +1,502 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Append-only log of every CalorieEvent of one profile, for audit and time travel. Unlike
+// the journal it is never compacted: the state at any past instant is rebuilt by replaying
+// it. Every SNAPSHOT_INTERVAL events the state reached so far is appended to a snapshot
+// file, so opening the log or going back in time replays at most that many events from the
+// nearest earlier snapshot. Timestamps never go backwards (a clock set back is clamped),
+// so both files are ordered by time.
+//
+// Log:       "CALE" then records [int length][byte type][long timestamp][long epochDay][payload][int crc]
+// Snapshots: "CALS" then records [int length][long events][long logOffset][state][int crc]
+public class CalorieEventLog implements Closeable {
+    static final int SNAPSHOT_INTERVAL = 10_000;
+    private static final int LOG_MAGIC = 0x43414C45; // "CALE"
+    private static final int SNAPSHOT_MAGIC = 0x43414C53; // "CALS"
+    private static final int HEADER_SIZE = 4;
+    private static final int READ_CHUNK = 1 << 20;
+    private static final long NO_DAY = Long.MIN_VALUE;
+
+    // State while replaying. Mutable, so a day of FOOD_ADDED events appends to one list
+    // instead of copying an immutable CalorieState per event.
+    private static final class Replay {
+        long events;
+        long timestamp;
+        long epochDay = NO_DAY;
+        int calories;
+        double goal = Double.NaN; // Not set by any event yet
+        final List<FoodEntry> entries = new ArrayList<>();
+
+        void apply(byte type, long at, long day, int eventCalories, double eventGoal, FoodEntry entry) {
+            if (day != epochDay || type == CalorieEvent.LOG_CLEARED || type == CalorieEvent.DAY_ROLLED) {
+                entries.clear();
+                calories = 0;
+            }
+            switch (type) {
+                case CalorieEvent.FOOD_ADDED:
+                    entries.add(entry);
+                    calories += eventCalories;
+                    break;
+                case CalorieEvent.GOAL_CHANGED:
+                    goal = eventGoal;
+                    break;
+                case CalorieEvent.TOTAL_SET:
+                    calories = eventCalories;
+                    break;
+                default:
+                    break; // LOG_CLEARED and DAY_ROLLED only reset; BMI_COMPUTED is for the audit trail
+            }
+            epochDay = day;
+            timestamp = at;
+            events++;
+        }
+
+        CalorieState toState(double defaultGoal) {
+            return new CalorieState(events, LocalDate.ofEpochDay(epochDay), calories, Double.isNaN(goal) ? defaultGoal : goal,
+                Collections.unmodifiableList(new ArrayList<>(entries)));
+        }
+    }
+
+    // Where a snapshot's state lives and which log prefix it covers.
+    private static final class SnapshotRef {
+        final long timestamp;
+        final long fileOffset;
+        final long logOffset;
+
+        SnapshotRef(long timestamp, long fileOffset, long logOffset) {
+            this.timestamp = timestamp;
+            this.fileOffset = fileOffset;
+            this.logOffset = logOffset;
+        }
+    }
+
+    private final Path logPath;
+    private final Path snapshotPath;
+    private final FileChannel log;
+    private final FileChannel snapshots;
+    private final List<SnapshotRef> snapshotIndex = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer recordBuffer = ByteBuffer.allocate(256);
+    private Replay live; // State after the last appended event
+    private boolean dirty;
+
+    private CalorieEventLog(Path logPath, Path snapshotPath) throws IOException {
+        this.logPath = logPath;
+        this.snapshotPath = snapshotPath;
+        this.log = openWithHeader(logPath, LOG_MAGIC);
+        this.snapshots = openWithHeader(snapshotPath, SNAPSHOT_MAGIC);
+    }
+
+    // Opens or creates the log, recovering the state from the last snapshot plus the
+    // events after it. A torn tail left by a crash is cut off in both files.
+    public static CalorieEventLog open(Path logPath, Path snapshotPath) throws IOException {
+        IoGuard.checkNotOnEdt("open " + logPath);
+        CalorieEventLog eventLog = new CalorieEventLog(logPath, snapshotPath);
+        try {
+            eventLog.recover();
+        } catch (IOException | RuntimeException e) {
+            eventLog.close();
+            throw e;
+        }
+        return eventLog;
+    }
+
+    public synchronized long size() {
+        return live.events;
+    }
+
+    // The state after the last event, or null if the log is empty; defaultGoal stands in
+    // for a goal no event has set.
+    public synchronized CalorieState current(double defaultGoal) {
+        return live.events == 0 ? null : live.toState(defaultGoal);
+    }
+
+    public synchronized void append(CalorieEvent event) throws IOException {
+        IoGuard.checkNotOnEdt("append to " + logPath);
+        long timestamp = Math.max(event.getTimestamp(), live.timestamp);
+        FoodEntry entry = event.getEntry();
+        byte[] name = entry != null ? entry.getName().getBytes(StandardCharsets.UTF_8) : null;
+        int payload = 17 + payloadLength(event.getType(), name);
+        if (recordBuffer.capacity() < payload + 8) {
+            recordBuffer = ByteBuffer.allocate(payload + 8);
+        }
+        recordBuffer.clear();
+        recordBuffer.putInt(payload).put(event.getType()).putLong(timestamp).putLong(event.getEpochDay());
+        switch (event.getType()) {
+            case CalorieEvent.FOOD_ADDED:
+                putEntry(recordBuffer, entry, name);
+                break;
+            case CalorieEvent.GOAL_CHANGED:
+                recordBuffer.putDouble(event.getGoal());
+                break;
+            case CalorieEvent.BMI_COMPUTED:
+                BmiMeasurement m = event.getMeasurement();
+                recordBuffer.putFloat(m.getHeightCm()).putFloat(m.getWeightKg()).putFloat(m.getBmi());
+                break;
+            case CalorieEvent.TOTAL_SET:
+                recordBuffer.putInt(event.getCalories());
+                break;
+            default:
+                break;
+        }
+        crc.reset();
+        crc.update(recordBuffer.array(), 4, payload);
+        recordBuffer.putInt((int) crc.getValue()).flip();
+        while (recordBuffer.hasRemaining()) {
+            log.write(recordBuffer);
+        }
+        dirty = true;
+        live.apply(event.getType(), timestamp, event.getEpochDay(), event.getCalories(), event.getGoal(), entry);
+        if (live.events % SNAPSHOT_INTERVAL == 0) {
+            writeSnapshot();
+        }
+    }
+
+    // Syncs appended events to disk; called when the I/O queue runs dry.
+    public synchronized void flush() throws IOException {
+        if (dirty) {
+            log.force(false);
+            dirty = false;
+        }
+    }
+
+    // The state as it was at atMillis (after every event up to and including that instant),
+    // or null if the log has no event that early.
+    public synchronized CalorieState stateAt(long atMillis, double defaultGoal) throws IOException {
+        Replay replay = replay(atMillis, true);
+        return replay.events == 0 ? null : replay.toState(defaultGoal);
+    }
+
+    // Every event in [fromMillis, toMillis], oldest first; the audit trail.
+    public synchronized void scan(long fromMillis, long toMillis, Consumer<CalorieEvent> consumer) throws IOException {
+        long start = HEADER_SIZE;
+        for (SnapshotRef ref : snapshotIndex) {
+            if (ref.timestamp >= fromMillis) {
+                break;
+            }
+            start = ref.logOffset; // Every event before this snapshot is older than fromMillis
+        }
+        read(start, log.size(), toMillis, (type, at, day, calories, goal, entry, measurement) -> {
+            if (at >= fromMillis) {
+                consumer.accept(decodeEvent(type, at, day, calories, goal, entry, measurement));
+            }
+        });
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            log.close();
+            snapshots.close();
+        }
+    }
+
+    // Replays up to atMillis, from the latest snapshot at or before it when useSnapshots.
+    synchronized Replay replay(long atMillis, boolean useSnapshots) throws IOException {
+        Replay replay = new Replay();
+        long start = HEADER_SIZE;
+        if (useSnapshots) {
+            int i = latestSnapshotAtOrBefore(atMillis);
+            if (i >= 0) {
+                replay = readSnapshot(snapshotIndex.get(i));
+                start = snapshotIndex.get(i).logOffset;
+            }
+        }
+        Replay target = replay;
+        read(start, log.size(), atMillis,
+            (type, at, day, calories, goal, entry, measurement) -> target.apply(type, at, day, calories, goal, entry));
+        return target;
+    }
+
+    // Events in the log; exposed for the replay benchmark.
+    synchronized long replayAll() throws IOException {
+        return replay(Long.MAX_VALUE, false).events;
+    }
+
+    private interface EventSink {
+        void accept(byte type, long at, long day, int calories, double goal, FoodEntry entry, float[] measurement);
+    }
+
+    private void recover() throws IOException {
+        long logSize = log.size();
+        long snapshotEnd = readSnapshotIndex(logSize);
+        if (snapshotEnd < snapshots.size()) {
+            System.out.println("Truncating torn or stale snapshots in " + snapshotPath.getFileName());
+            snapshots.truncate(snapshotEnd);
+        }
+        snapshots.position(snapshots.size());
+
+        live = snapshotIndex.isEmpty() ? new Replay() : readSnapshot(snapshotIndex.get(snapshotIndex.size() - 1));
+        long start = snapshotIndex.isEmpty() ? HEADER_SIZE : snapshotIndex.get(snapshotIndex.size() - 1).logOffset;
+        Replay target = live;
+        long end = read(start, logSize, Long.MAX_VALUE,
+            (type, at, day, calories, goal, entry, measurement) -> target.apply(type, at, day, calories, goal, entry));
+        if (end < logSize) {
+            System.out.println("Truncating torn event log tail in " + logPath.getFileName());
+            log.truncate(end);
+        }
+        log.position(log.size());
+    }
+
+    // Reads records from [from, to) until one is later than untilMillis; returns the offset
+    // after the last intact record passed to the sink.
+    private long read(long from, long to, long untilMillis, EventSink sink) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_CHUNK, Math.max(64, to - from)));
+        buffer.limit(0);
+        long offset = from; // File offset of buffer.position()
+        float[] measurement = new float[3];
+        while (true) {
+            if (buffer.remaining() < 4 || buffer.remaining() < 8 + buffer.getInt(buffer.position())) {
+                // Refill, keeping the partial record; grow if one record does not fit
+                int needed = buffer.remaining() >= 4 ? 8 + buffer.getInt(buffer.position()) : 4;
+                if (offset + Math.max(needed, 0) > to || needed < 4) {
+                    return offset;
+                }
+                buffer.compact();
+                if (buffer.capacity() < needed) {
+                    buffer.flip();
+                    buffer = ByteBuffer.allocate(needed).put(buffer);
+                }
+                long fileOffset = offset + buffer.position();
+                int limit = (int) Math.min(buffer.capacity(), buffer.position() + (to - fileOffset));
+                buffer.limit(limit);
+                while (buffer.hasRemaining()) {
+                    if (log.read(buffer, offset + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+                if (buffer.remaining() < needed) {
+                    return offset; // The file is shorter than expected
+                }
+                continue;
+            }
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length < 17) {
+                return offset;
+            }
+            crc.reset();
+            crc.update(buffer.array(), start + 4, length);
+            if ((int) crc.getValue() != buffer.getInt(start + 4 + length)) {
+                return offset;
+            }
+            buffer.position(start + 4);
+            byte type = buffer.get();
+            long at = buffer.getLong();
+            if (at > untilMillis) {
+                return offset;
+            }
+            long day = buffer.getLong();
+            int calories = 0;
+            double goal = 0;
+            FoodEntry entry = null;
+            switch (type) {
+                case CalorieEvent.FOOD_ADDED:
+                    entry = getEntry(buffer);
+                    calories = entry.getCalories();
+                    break;
+                case CalorieEvent.GOAL_CHANGED:
+                    goal = buffer.getDouble();
+                    break;
+                case CalorieEvent.BMI_COMPUTED:
+                    measurement[0] = buffer.getFloat();
+                    measurement[1] = buffer.getFloat();
+                    measurement[2] = buffer.getFloat();
+                    break;
+                case CalorieEvent.TOTAL_SET:
+                    calories = buffer.getInt();
+                    break;
+                default:
+                    break;
+            }
+            sink.accept(type, at, day, calories, goal, entry, measurement);
+            buffer.position(start + 8 + length);
+            offset += 8 + length;
+        }
+    }
+
+    private static CalorieEvent decodeEvent(byte type, long at, long epochDay, int calories, double goal, FoodEntry entry,
+            float[] m) {
+        LocalDate day = LocalDate.ofEpochDay(epochDay);
+        switch (type) {
+            case CalorieEvent.FOOD_ADDED:
+                return CalorieEvent.foodAdded(at, day, entry);
+            case CalorieEvent.LOG_CLEARED:
+                return CalorieEvent.logCleared(at, day);
+            case CalorieEvent.GOAL_CHANGED:
+                return CalorieEvent.goalChanged(at, day, goal);
+            case CalorieEvent.BMI_COMPUTED:
+                return CalorieEvent.bmiComputed(day, new BmiMeasurement(at, m[0], m[1], m[2]));
+            case CalorieEvent.TOTAL_SET:
+                return CalorieEvent.totalSet(at, day, calories);
+            default:
+                return CalorieEvent.dayRolled(at, day);
+        }
+    }
+
+    private void writeSnapshot() throws IOException {
+        log.force(false); // The snapshot must never cover events that are not on disk
+        dirty = false;
+        int length = 16;
+        List<byte[]> names = new ArrayList<>(live.entries.size());
+        for (FoodEntry e : live.entries) {
+            byte[] name = e.getName().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            length += 30 + name.length;
+        }
+        length += 8 + 8 + 4 + 8 + 4; // Timestamp, day, calories, goal, entry count
+        ByteBuffer out = ByteBuffer.allocate(length + 8);
+        out.putInt(length).putLong(live.events).putLong(log.position())
+           .putLong(live.timestamp).putLong(live.epochDay).putInt(live.calories).putDouble(live.goal)
+           .putInt(live.entries.size());
+        for (int i = 0; i < live.entries.size(); i++) {
+            putEntry(out, live.entries.get(i), names.get(i));
+        }
+        crc.reset();
+        crc.update(out.array(), 4, length);
+        out.putInt((int) crc.getValue()).flip();
+        long fileOffset = snapshots.position();
+        while (out.hasRemaining()) {
+            snapshots.write(out);
+        }
+        snapshots.force(false);
+        snapshotIndex.add(new SnapshotRef(live.timestamp, fileOffset, log.position()));
+    }
+
+    // Indexes the intact snapshots that cover no more than logSize bytes of log; returns
+    // the offset after the last one.
+    private long readSnapshotIndex(long logSize) throws IOException {
+        long size = snapshots.size();
+        long offset = HEADER_SIZE;
+        ByteBuffer head = ByteBuffer.allocate(4 + 8 + 8 + 8);
+        while (offset + head.capacity() <= size) {
+            head.clear();
+            snapshots.read(head, offset);
+            head.flip();
+            int length = head.getInt();
+            if (length < 48 || offset + 8 + length > size) {
+                break;
+            }
+            head.getLong(); // Event count
+            long logOffset = head.getLong();
+            long timestamp = head.getLong();
+            ByteBuffer record = readFully(snapshots, offset + 4, length + 4);
+            crc.reset();
+            crc.update(record.array(), 0, length);
+            if ((int) crc.getValue() != record.getInt(length) || logOffset > logSize) {
+                break;
+            }
+            snapshotIndex.add(new SnapshotRef(timestamp, offset, logOffset));
+            offset += 8 + length;
+        }
+        return offset;
+    }
+
+    private Replay readSnapshot(SnapshotRef ref) throws IOException {
+        ByteBuffer length = readFully(snapshots, ref.fileOffset, 4);
+        ByteBuffer data = readFully(snapshots, ref.fileOffset + 4, length.getInt(0));
+        Replay replay = new Replay();
+        replay.events = data.getLong();
+        data.getLong(); // Log offset, already in the index
+        replay.timestamp = data.getLong();
+        replay.epochDay = data.getLong();
+        replay.calories = data.getInt();
+        replay.goal = data.getDouble();
+        int entries = data.getInt();
+        for (int i = 0; i < entries; i++) {
+            replay.entries.add(getEntry(data));
+        }
+        return replay;
+    }
+
+    // Index of the last snapshot taken at or before atMillis, or -1.
+    private int latestSnapshotAtOrBefore(long atMillis) {
+        int lo = 0;
+        int hi = snapshotIndex.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (snapshotIndex.get(mid).timestamp <= atMillis) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo - 1;
+    }
+
+    private static int payloadLength(byte type, byte[] name) {
+        switch (type) {
+            case CalorieEvent.FOOD_ADDED:
+                return 30 + name.length;
+            case CalorieEvent.GOAL_CHANGED:
+                return 8;
+            case CalorieEvent.BMI_COMPUTED:
+                return 12;
+            case CalorieEvent.TOTAL_SET:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    private static void putEntry(ByteBuffer out, FoodEntry entry, byte[] name) {
+        out.putLong(entry.getTimestamp())
+           .putInt(entry.getCalories())
+           .putFloat(entry.getProtein())
+           .putFloat(entry.getCarbs())
+           .putFloat(entry.getFat())
+           .putFloat(entry.getPortionGrams())
+           .putShort((short) name.length)
+           .put(name);
+    }
+
+    private static FoodEntry getEntry(ByteBuffer in) {
+        long timestamp = in.getLong();
+        int calories = in.getInt();
+        float protein = in.getFloat();
+        float carbs = in.getFloat();
+        float fat = in.getFloat();
+        float portion = in.getFloat();
+        byte[] name = new byte[in.getShort() & 0xFFFF];
+        in.get(name);
+        return new FoodEntry(timestamp, new String(name, StandardCharsets.UTF_8), calories, protein, carbs, fat, portion);
+    }
+
+    private static FileChannel openWithHeader(Path path, int magic) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_SIZE) {
+            channel.truncate(0);
+            channel.write(ByteBuffer.allocate(HEADER_SIZE).putInt(0, magic), 0);
+        } else if (readFully(channel, 0, HEADER_SIZE).getInt(0) != magic) {
+            channel.close();
+            throw new IOException("Not a calorie event file: " + path);
+        }
+        return channel;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buffer.flip();
+    }
+}
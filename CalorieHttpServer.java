@@ -0,0 +1,431 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Embedded HTTP API over the same ProfileStore the dashboard uses, so entries logged by
+// phones or scripts show up in the open window through the engine listeners. Requests
+// run one per virtual thread when the JDK has them (21+) and on a cached pool otherwise;
+// handlers just block on the engine futures. Every /api endpoint but /api/profiles takes
+// an optional profile=<name> (default "default"), which must already exist (404 if not);
+// all answer JSON, and parameters may be in the query string or a form-encoded body.
+//
+//   GET  /api/profiles                                             every profile's name
+//   POST /api/profiles name                                        creates a profile; created is false if it existed
+//   POST /api/log    name, calories[, protein, carbs, fat, grams]  logs a food entry for today
+//   GET  /api/day    [date=yyyy-MM-dd]                             one day's total (default today)
+//   GET  /api/range  from, to                                      every recorded day in [from, to]
+//   GET  /api/foods  [days=90]                                      calories per food over the last days
+//   GET  /api/intake from, to[, by=day|week|month]                 food entry calories per day, week (from from)
+//                                                                  or calendar month, and their macro totals
+//   GET  /api/goal                                                 the daily calorie goal
+//   POST /api/goal   goal                                          sets the daily calorie goal
+//   GET  /metrics                                                  every Metrics value, Prometheus text format
+public class CalorieHttpServer implements Closeable {
+    public static final int DEFAULT_PORT = 8080;
+    private static final int MAX_RANGE_DAYS = 100 * 366;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final Metrics.Histogram REQUEST_TIME = Metrics.histogram("http.request");
+    private static final Metrics.Counter ERRORS = Metrics.counter("http.errors");
+
+    private final ProfileStore profiles;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public CalorieHttpServer(ProfileStore profiles, InetSocketAddress address) throws IOException {
+        this.profiles = profiles;
+        // The JDK server writes headers and body separately; with Nagle's algorithm on, the
+        // body waits for the client's delayed ACK (~40 ms per request). Read once, at first use.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.server = HttpServer.create(address, 1024);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/profiles", exchange -> handle(exchange, null, this::profiles));
+        server.createContext("/api/log", exchange -> handle(exchange, "POST", forProfile(this::log)));
+        server.createContext("/api/day", exchange -> handle(exchange, "GET", forProfile(this::day)));
+        server.createContext("/api/range", exchange -> handle(exchange, "GET", forProfile(this::range)));
+        server.createContext("/api/foods", exchange -> handle(exchange, "GET", forProfile(this::foods)));
+        server.createContext("/api/intake", exchange -> handle(exchange, "GET", forProfile(this::intake)));
+        server.createContext("/api/goal", exchange -> handle(exchange, null, forProfile(this::goal)));
+        server.createContext("/metrics", this::metrics);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // The bound port; useful when the server was created on port 0.
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Stops accepting requests and gives running ones a second to finish.
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private interface Handler {
+        String handle(String method, Map<String, String> params);
+    }
+
+    private interface Endpoint {
+        String handle(String method, Map<String, String> params, CalorieEngine engine);
+    }
+
+    // A bad request from the client; answered with 400 and its message.
+    private static final class BadRequest extends RuntimeException {
+        BadRequest(String message) {
+            super(message);
+        }
+    }
+
+    // A profile the client named that was never created; answered with 404 and its message.
+    private static final class NotFound extends RuntimeException {
+        NotFound(String message) {
+            super(message);
+        }
+    }
+
+    // Runs the endpoint on the engine of the request's profile. Only profiles that exist are
+    // opened, so clients cannot create profile directories just by naming them.
+    private Handler forProfile(Endpoint endpoint) {
+        return (method, params) -> {
+            String profile = params.getOrDefault("profile", ProfileStore.DEFAULT_PROFILE);
+            if (!ProfileStore.isValidName(profile)) {
+                throw new BadRequest("Invalid profile name: " + profile);
+            }
+            if (!profiles.exists(profile)) {
+                throw new NotFound("No profile named " + profile + "; create it with POST /api/profiles");
+            }
+            return endpoint.handle(method, params, profiles.get(profile).join());
+        };
+    }
+
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        long start = System.nanoTime();
+        int status = 200;
+        String body;
+        try {
+            String requestMethod = exchange.getRequestMethod();
+            if (method != null && !method.equals(requestMethod)) {
+                exchange.getResponseHeaders().set("Allow", method);
+                status = 405;
+                body = error("Use " + method);
+            } else {
+                body = handler.handle(requestMethod, params(exchange));
+            }
+        } catch (BadRequest e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (NotFound e) {
+            status = 404;
+            body = error(e.getMessage());
+        } catch (RuntimeException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            System.out.println("Error handling " + exchange.getRequestURI() + ": " + cause);
+            status = 500;
+            body = error("Internal error");
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        if (status >= 500) {
+            ERRORS.increment();
+        }
+        REQUEST_TIME.recordSince(start);
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        StringWriter text = new StringWriter();
+        Metrics.writePrometheus(text);
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String log(String method, Map<String, String> params, CalorieEngine engine) {
+        String name = required(params, "name").trim();
+        if (name.isEmpty() || name.length() > 200) {
+            throw new BadRequest("name must be 1 to 200 characters");
+        }
+        int calories = (int) number(params, "calories", 0, CsvImporter.MAX_CALORIES);
+        float protein = (float) optionalNumber(params, "protein", 0, 10_000);
+        float carbs = (float) optionalNumber(params, "carbs", 0, 10_000);
+        float fat = (float) optionalNumber(params, "fat", 0, 10_000);
+        float grams = (float) optionalNumber(params, "grams", 0, 100_000);
+        FoodEntry entry = new FoodEntry(System.currentTimeMillis(), name, calories, protein, carbs, fat, grams);
+        return state(engine.logFood(entry).join());
+    }
+
+    private String day(String method, Map<String, String> params, CalorieEngine engine) {
+        CalorieState state = engine.current();
+        LocalDate date = params.containsKey("date") ? date(params, "date") : state.getDay();
+        int calories;
+        if (date.equals(state.getDay())) {
+            calories = state.getDailyCalories(); // Today's running total, without a trip to the state thread
+        } else {
+            calories = engine.range(date, date).join().get(date);
+        }
+        return "{\"date\":\"" + date + "\",\"calories\":"
+            + (calories == CalorieSeries.EMPTY ? "null" : String.valueOf(calories)) + "}";
+    }
+
+    private String range(String method, Map<String, String> params, CalorieEngine engine) {
+        LocalDate from = date(params, "from");
+        LocalDate to = date(params, "to");
+        if (to.isBefore(from) || ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new BadRequest("to must be on or after from, and at most " + MAX_RANGE_DAYS + " days later");
+        }
+        CalorieSeries days = engine.range(from, to).join();
+        StringBuilder out = new StringBuilder(64 + days.size() * 36);
+        out.append("{\"from\":\"").append(from).append("\",\"to\":\"").append(to).append("\",\"days\":[");
+        long[] total = new long[1];
+        days.forEach((epochDay, calories) -> {
+            if (out.charAt(out.length() - 1) != '[') {
+                out.append(',');
+            }
+            out.append("{\"date\":\"").append(LocalDate.ofEpochDay(epochDay)).append("\",\"calories\":")
+               .append(calories).append('}');
+            total[0] += calories;
+        });
+        out.append("],\"recorded\":").append(days.size()).append(",\"total\":").append(total[0]).append('}');
+        return out.toString();
+    }
+
+    private String foods(String method, Map<String, String> params, CalorieEngine engine) {
+        int days = params.containsKey("days") ? (int) number(params, "days", 1, MAX_RANGE_DAYS) : 90;
+        long now = System.currentTimeMillis();
+        Map<String, Long> totals = engine.caloriesByFood(now - days * 86_400_000L, now + 1).join();
+        StringBuilder out = new StringBuilder(32 + totals.size() * 40);
+        out.append("{\"days\":").append(days).append(",\"foods\":[");
+        for (Map.Entry<String, Long> food : totals.entrySet()) {
+            if (out.charAt(out.length() - 1) != '[') {
+                out.append(',');
+            }
+            out.append("{\"name\":\"").append(escape(food.getKey())).append("\",\"calories\":")
+               .append(food.getValue()).append('}');
+        }
+        return out.append("]}").toString();
+    }
+
+    // The food log rolled up per period; weeks and months are whole, so the last one may
+    // run past to, while the macro totals cover exactly [from, to].
+    private String intake(String method, Map<String, String> params, CalorieEngine engine) {
+        LocalDate from = date(params, "from");
+        LocalDate to = date(params, "to");
+        if (to.isBefore(from) || ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new BadRequest("to must be on or after from, and at most " + MAX_RANGE_DAYS + " days later");
+        }
+        String by = params.getOrDefault("by", "day");
+        LocalDate[] starts;
+        int[] calories;
+        switch (by) {
+            case "day":
+                calories = engine.dailyFoodCalories(from, to).join();
+                starts = new LocalDate[calories.length];
+                for (int i = 0; i < starts.length; i++) {
+                    starts[i] = from.plusDays(i);
+                }
+                break;
+            case "week":
+                calories = engine.weeklyFoodCalories(from, (int) (ChronoUnit.DAYS.between(from, to) / 7) + 1).join();
+                starts = new LocalDate[calories.length];
+                for (int i = 0; i < starts.length; i++) {
+                    starts[i] = from.plusWeeks(i);
+                }
+                break;
+            case "month":
+                YearMonth first = YearMonth.from(from);
+                calories = engine.monthlyFoodCalories(first, (int) first.until(YearMonth.from(to), ChronoUnit.MONTHS) + 1).join();
+                starts = new LocalDate[calories.length];
+                for (int i = 0; i < starts.length; i++) {
+                    starts[i] = first.plusMonths(i).atDay(1);
+                }
+                break;
+            default:
+                throw new BadRequest("by must be day, week or month");
+        }
+        FoodEntryStore.NutrientTotals totals = engine.nutrientTotals(from, to).join();
+        StringBuilder out = new StringBuilder(128 + calories.length * 40);
+        out.append("{\"from\":\"").append(from).append("\",\"to\":\"").append(to)
+           .append("\",\"by\":\"").append(by).append("\",\"periods\":[");
+        for (int i = 0; i < calories.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"start\":\"").append(starts[i]).append("\",\"calories\":").append(calories[i]).append('}');
+        }
+        out.append(String.format(Locale.ROOT, "],\"entries\":%d,\"calories\":%d,\"protein\":%.1f,\"carbs\":%.1f,\"fat\":%.1f}",
+            totals.entries, totals.calories, totals.protein, totals.carbs, totals.fat));
+        return out.toString();
+    }
+
+    private String profiles(String method, Map<String, String> params) {
+        try {
+            switch (method) {
+                case "GET":
+                    StringBuilder out = new StringBuilder("{\"profiles\":[");
+                    String separator = "";
+                    for (String name : profiles.profiles()) {
+                        out.append(separator).append('"').append(name).append('"');
+                        separator = ",";
+                    }
+                    return out.append("]}").toString();
+                case "POST":
+                    String name = required(params, "name");
+                    if (!ProfileStore.isValidName(name)) {
+                        throw new BadRequest("name must be 1 to 40 letters, digits, '-' or '_'");
+                    }
+                    boolean created = !profiles.exists(name);
+                    profiles.create(name).join();
+                    return "{\"profile\":\"" + name + "\",\"created\":" + created + "}";
+                default:
+                    throw new BadRequest("Use GET or POST");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String goal(String method, Map<String, String> params, CalorieEngine engine) {
+        switch (method) {
+            case "GET":
+                return state(engine.current());
+            case "POST":
+            case "PUT":
+                return state(engine.setGoal(number(params, "goal", 1, CsvImporter.MAX_CALORIES)).join());
+            default:
+                throw new BadRequest("Use GET, POST or PUT");
+        }
+    }
+
+    private static String state(CalorieState state) {
+        return String.format(Locale.ROOT, "{\"day\":\"%s\",\"calories\":%d,\"goal\":%.0f,\"entries\":%d}",
+            state.getDay(), state.getDailyCalories(), state.getCalorieGoal(), state.getTodayEntries().size());
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + escape(message) + "\"}";
+    }
+
+    private static String escape(String text) {
+        StringBuilder out = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                out.append('\\').append(ch);
+            } else if (ch < 0x20) {
+                out.append(String.format("\\u%04x", (int) ch));
+            } else {
+                out.append(ch);
+            }
+        }
+        return out.toString();
+    }
+
+    // Query string parameters, overridden by a form-encoded body's.
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new BadRequest("Request body too large");
+            }
+            parseForm(new String(body, StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            try {
+                params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequest("Malformed parameter: " + key);
+            }
+        }
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) {
+            throw new BadRequest("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static double number(Map<String, String> params, String name, double min, double max) {
+        double value;
+        try {
+            value = Double.parseDouble(required(params, name));
+        } catch (NumberFormatException e) {
+            throw new BadRequest(name + " must be a number");
+        }
+        if (!(value >= min && value <= max)) {
+            throw new BadRequest(name + " must be between " + (long) min + " and " + (long) max);
+        }
+        return value;
+    }
+
+    private static double optionalNumber(Map<String, String> params, String name, double min, double max) {
+        return params.containsKey(name) ? number(params, name, min, max) : 0;
+    }
+
+    private static LocalDate date(Map<String, String> params, String name) {
+        try {
+            return LocalDate.parse(required(params, name));
+        } catch (DateTimeParseException e) {
+            throw new BadRequest(name + " must be a date (yyyy-MM-dd)");
+        }
+    }
+
+    // One virtual thread per request on JDK 21+, looked up reflectively so the code still
+    // builds and runs on older JDKs, where a cached pool of daemon threads is used instead.
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "calorie-http-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
@@ -0,0 +1,282 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead journal for daily calorie totals and logged food entries.
+// Every change is appended as one small record; fsync is batched on a background
+// thread, and once the journal grows past COMPACT_THRESHOLD it is rotated and the
+// snapshot is checkpointed in the background. Startup replays snapshot + journal.
+public class CalorieJournal implements Closeable {
+    static final byte DAY_TOTAL = 1;
+    static final byte FOOD_ENTRY = 2;
+
+    // Receives replayed records in the order they were appended.
+    public interface ReplayHandler {
+        void onDayTotal(LocalDate date, int calories);
+
+        // seq is the entry's position in the food entry store, so replay can skip
+        // entries a checkpoint already persisted.
+        void onFoodEntry(int seq, FoodEntry entry);
+    }
+
+    // Makes everything already applied to the snapshot durable, so the rotated journal can go.
+    @FunctionalInterface
+    public interface Checkpoint {
+        void persist() throws IOException;
+    }
+
+    private static final int COMPACT_THRESHOLD = 4096;
+    private static final long FLUSH_INTERVAL_MS = 200;
+
+    private final Path journalPath;
+    private final Path rotatedPath;
+    private final Checkpoint checkpoint;
+    private final ScheduledExecutorService background;
+    private ByteBuffer recordBuffer = ByteBuffer.allocate(256);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private int recordCount;
+    private boolean dirty;
+    private boolean compacting;
+    private CompletableFuture<Void> checkpointDone = CompletableFuture.completedFuture(null);
+
+    public CalorieJournal(Path journalPath, Checkpoint checkpoint) {
+        this.journalPath = journalPath;
+        this.rotatedPath = journalPath.resolveSibling(journalPath.getFileName() + ".old");
+        this.checkpoint = checkpoint;
+        this.background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "calorie-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        background.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Replays the journal on top of whatever the snapshot already loaded.
+    // A rotated journal left behind by an interrupted compaction is replayed first.
+    public synchronized void replay(ReplayHandler handler) throws IOException {
+        IoGuard.checkNotOnEdt("replay " + journalPath);
+        replayFile(rotatedPath, handler);
+        recordCount = replayFile(journalPath, handler);
+        channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    public synchronized void appendDayTotal(LocalDate date, int calories) throws IOException {
+        startRecord(DAY_TOTAL, 12);
+        recordBuffer.putLong(date.toEpochDay()).putInt(calories);
+        writeRecord();
+    }
+
+    public synchronized void appendFoodEntry(int seq, FoodEntry entry) throws IOException {
+        byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+        startRecord(FOOD_ENTRY, 34 + name.length);
+        recordBuffer.putInt(seq)
+                    .putLong(entry.getTimestamp())
+                    .putInt(entry.getCalories())
+                    .putFloat(entry.getProtein())
+                    .putFloat(entry.getCarbs())
+                    .putFloat(entry.getFat())
+                    .putFloat(entry.getPortionGrams())
+                    .putShort((short) name.length)
+                    .put(name);
+        writeRecord();
+    }
+
+    // Record framing: [int length][byte type][payload][int crc32 of type + payload]
+    private void startRecord(byte type, int payloadLength) {
+        int needed = payloadLength + 9;
+        if (recordBuffer.capacity() < needed) {
+            recordBuffer = ByteBuffer.allocate(needed);
+        }
+        recordBuffer.clear();
+        recordBuffer.putInt(payloadLength + 1).put(type);
+    }
+
+    private void writeRecord() throws IOException {
+        IoGuard.checkNotOnEdt("append to " + journalPath);
+        crc.reset();
+        crc.update(recordBuffer.array(), 4, recordBuffer.position() - 4);
+        recordBuffer.putInt((int) crc.getValue());
+        recordBuffer.flip();
+        while (recordBuffer.hasRemaining()) {
+            channel.write(recordBuffer);
+        }
+        dirty = true;
+        if (++recordCount >= COMPACT_THRESHOLD && !compacting) {
+            compact();
+        }
+    }
+
+    // Rotates the journal and checkpoints the snapshot in the background. Every rotated record
+    // has already been applied to the snapshot; anything newer lands in the fresh journal.
+    // Does nothing while a checkpoint is still running.
+    public synchronized void compact() throws IOException {
+        if (compacting) {
+            return;
+        }
+        channel.force(false);
+        channel.close();
+        if (Files.exists(rotatedPath)) {
+            // A failed checkpoint left its rotated journal behind; append to it, never replace it
+            try (FileChannel from = FileChannel.open(journalPath, StandardOpenOption.READ);
+                 FileChannel to = FileChannel.open(rotatedPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long size = from.size();
+                for (long position = 0; position < size; ) {
+                    position += from.transferTo(position, size - position, to);
+                }
+                to.force(false);
+            }
+            Files.delete(journalPath);
+        } else {
+            Files.move(journalPath, rotatedPath);
+        }
+        channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        recordCount = 0;
+        dirty = false;
+        compacting = true;
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        checkpointDone = done;
+        background.execute(() -> {
+            IOException failure = null;
+            try {
+                checkpoint.persist();
+                Files.deleteIfExists(rotatedPath);
+            } catch (IOException e) {
+                System.out.println("Journal compaction failed, keeping rotated journal: " + e.getMessage());
+                failure = e;
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                }
+                if (failure == null) {
+                    done.complete(null);
+                } else {
+                    done.completeExceptionally(failure);
+                }
+            }
+        });
+    }
+
+    // Waits out a checkpoint still in flight, then compacts and waits for that checkpoint too,
+    // so every record appended before the call is out of the journal when it returns.
+    public void compactAndWait() throws IOException {
+        CompletableFuture<Void> done;
+        while (true) {
+            synchronized (this) {
+                done = checkpointDone;
+                if (!compacting) {
+                    compact();
+                    done = checkpointDone;
+                    break;
+                }
+            }
+            done.handle((ignored, error) -> null).join(); // Outside the lock, which the checkpoint needs to finish
+        }
+        try {
+            done.join();
+        } catch (CompletionException e) {
+            throw new IOException("Journal checkpoint failed", e.getCause());
+        }
+    }
+
+    public synchronized void flush() {
+        if (!dirty || channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            System.out.println("Error syncing journal: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        background.shutdown();
+        try {
+            background.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                System.out.println("Error closing journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // Returns the number of intact records; a torn or corrupt tail from a crash is truncated.
+    private int replayFile(Path path, ReplayHandler handler) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int count = 0;
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer data = ByteBuffer.allocate((int) fc.size());
+            while (data.hasRemaining() && fc.read(data) >= 0) {
+                // Read the whole journal; it is bounded by COMPACT_THRESHOLD records
+            }
+            data.flip();
+            int lastGood = 0;
+            while (data.remaining() >= 4) {
+                int start = data.position();
+                int length = data.getInt();
+                if (length <= 0 || data.remaining() < length + 4) {
+                    break;
+                }
+                crc.reset();
+                crc.update(data.array(), start + 4, length);
+                data.position(start + 4 + length);
+                if ((int) crc.getValue() != data.getInt()) {
+                    break;
+                }
+                data.position(start + 4);
+                byte type = data.get();
+                if (type == DAY_TOTAL) {
+                    LocalDate date = LocalDate.ofEpochDay(data.getLong());
+                    handler.onDayTotal(date, data.getInt());
+                } else if (type == FOOD_ENTRY) {
+                    int seq = data.getInt();
+                    long timestamp = data.getLong();
+                    int calories = data.getInt();
+                    float protein = data.getFloat();
+                    float carbs = data.getFloat();
+                    float fat = data.getFloat();
+                    float portion = data.getFloat();
+                    byte[] name = new byte[data.getShort() & 0xFFFF];
+                    data.get(name);
+                    handler.onFoodEntry(seq, new FoodEntry(timestamp, new String(name, StandardCharsets.UTF_8),
+                        calories, protein, carbs, fat, portion));
+                }
+                data.position(start + 8 + length);
+                lastGood = data.position();
+                count++;
+            }
+            if (lastGood < fc.size()) {
+                System.out.println("Truncating torn journal tail in " + path.getFileName());
+                fc.truncate(lastGood);
+            }
+        }
+        return count;
+    }
+}
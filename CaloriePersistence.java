@@ -0,0 +1,368 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Owns a profile's calorie data (its CalorieStorage, by default the day-store, food entry
+// store and journal, and the CalorieEventLog) and runs every load, save and export on one
+// dedicated "calorie-persistence" thread. Each call returns a CompletableFuture; callers
+// attach their UI callbacks with an EDT executor, so the Event Dispatch Thread never
+// touches the disk. Tasks run in submission order.
+public class CaloriePersistence implements Closeable {
+    static final String RECORDS_CSV = "monthly_calorie_records.csv";
+    static final String DAY_STORE = "calorie_days.bin";
+    static final String FOOD_STORE = "food_entries.bin";
+    static final String JOURNAL = "monthly_calorie_records.journal";
+    static final String BMI_HISTORY = "bmi_history.bin";
+    static final String EVENT_LOG = "calorie_events.log";
+    static final String EVENT_SNAPSHOTS = "calorie_events.snap";
+    static final String ARCHIVE = "calorie_archive.cala"; // Optional; history older than the live records
+
+    private static final Metrics.Histogram LOAD_TIME = Metrics.histogram("records.load");
+    private static final Metrics.Histogram EXPORT_TIME = Metrics.histogram("records.export");
+    private static final Metrics.Histogram ARCHIVE_TIME = Metrics.histogram("records.archive");
+
+    private final Path directory;
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "calorie-persistence");
+        t.setDaemon(true);
+        return t;
+    });
+    private final CalorieStorage storage;
+    private BmiHistoryStore bmiHistory; // Loaded on first use
+    private CalorieEventLog eventLog; // Opened on first use
+    private boolean flushQueued; // Confined to the io thread
+    private volatile CalorieArchive archive; // Set by load() when the profile has one; scanned on the io thread
+
+    public CaloriePersistence(Path directory) {
+        this(directory, ProfileStore.DEFAULT_PROFILE);
+    }
+
+    // profile names the data in a storage shared by all profiles (see CalorieStorage).
+    public CaloriePersistence(Path directory, String profile) {
+        this.directory = directory;
+        this.storage = CalorieStorage.forProfile(directory, profile);
+    }
+
+    // Opens the storage, importing the legacy CSV on first run, and returns an in-heap
+    // copy of the daily totals.
+    public CompletableFuture<CalorieSeries> load() {
+        return submit(() -> {
+            long start = System.nanoTime();
+            Files.createDirectories(directory); // New profiles start with an empty directory
+            storage.open(() -> importCsv(directory.resolve(RECORDS_CSV))); // One-time import of the legacy CSV records
+            CalorieSeries days = storage.days();
+            openArchive();
+            LOAD_TIME.recordSince(start);
+            return days;
+        });
+    }
+
+    // An archive (see CalorieArchive) copied into the profile directory, e.g. one written
+    // by CalorieBatch before the live files were started afresh, serves the days and food
+    // entries older than the live ones. A damaged archive is skipped, not fatal.
+    private void openArchive() {
+        Path path = directory.resolve(ARCHIVE);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            archive = CalorieArchive.open(path);
+        } catch (IOException e) {
+            System.out.println("Error opening archive " + path + ": " + e.getMessage());
+        }
+    }
+
+    // The archived days in [fromDay, toDay]; empty, without a trip to the io thread, when
+    // the profile has no archive.
+    public CompletableFuture<CalorieSeries> archivedDays(long fromDay, long toDay) {
+        CalorieArchive scanned = archive;
+        if (scanned == null) {
+            return CompletableFuture.completedFuture(new CalorieSeries());
+        }
+        return submit(() -> {
+            CalorieSeries days = new CalorieSeries();
+            scanned.scanDays(fromDay, toDay, days::put);
+            return days;
+        });
+    }
+
+    public CompletableFuture<Void> saveDay(LocalDate date, int calories) {
+        return submit(() -> {
+            storage.putDay(date.toEpochDay(), calories);
+            queueFlush();
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> saveFoodEntry(FoodEntry entry) {
+        return submit(() -> {
+            storage.addFoodEntry(entry);
+            queueFlush();
+            return null;
+        });
+    }
+
+    // Imports daily totals from any CSV into the storage, replacing the days it contains.
+    public CompletableFuture<CsvImporter.Result> importRecords(Path csv, CsvImporter.Mapping mapping,
+            CsvImporter.ProgressListener progress) {
+        return submit(() -> {
+            CsvImporter.Result result = new CsvImporter(mapping, progress).run(csv, quarantinePath(csv), storage::importDay);
+            storage.finishImport();
+            return result;
+        });
+    }
+
+    // A copy of the daily totals as they are in the storage now.
+    public CompletableFuture<CalorieSeries> snapshot() {
+        return submit(storage::days);
+    }
+
+    // Total calories per food name for entries logged in [fromMillis, toMillis), largest first.
+    // Archived entries count for the part of the window before the first live entry.
+    public CompletableFuture<Map<String, Long>> caloriesByFood(long fromMillis, long toMillis) {
+        return submit(() -> {
+            Map<String, Long> totals = storage.caloriesByFood(fromMillis, toMillis);
+            CalorieArchive scanned = archive;
+            if (scanned == null) {
+                return totals;
+            }
+            long archivedTo = Math.min(toMillis, storage.firstFoodEntryMillis()); // Exclusive, like toMillis
+            if (archivedTo <= fromMillis) {
+                return totals;
+            }
+            Map<String, Long> merged = new HashMap<>(totals);
+            scanned.scanFoodEntries(fromMillis, archivedTo - 1,
+                entry -> merged.merge(entry.getName(), (long) entry.getCalories(), Long::sum));
+            Map<String, Long> sorted = new LinkedHashMap<>();
+            merged.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(e -> sorted.put(e.getKey(), e.getValue()));
+            return sorted;
+        });
+    }
+
+    // Calories of the food entries logged on each day in [from, to], in each week from
+    // from, or in each calendar month from the given month.
+    public CompletableFuture<int[]> dailyFoodCalories(LocalDate from, LocalDate to) {
+        return submit(() -> storage.dailyFoodCalories(from.toEpochDay(), to.toEpochDay()));
+    }
+
+    public CompletableFuture<int[]> weeklyFoodCalories(LocalDate from, int weeks) {
+        return submit(() -> storage.weeklyFoodCalories(from.toEpochDay(), weeks));
+    }
+
+    public CompletableFuture<int[]> monthlyFoodCalories(YearMonth from, int months) {
+        return submit(() -> storage.monthlyFoodCalories(from, months));
+    }
+
+    public CompletableFuture<FoodEntryStore.NutrientTotals> nutrientTotals(LocalDate from, LocalDate to) {
+        return submit(() -> storage.nutrientTotals(from.toEpochDay(), to.toEpochDay()));
+    }
+
+    // Appends to the event log, which is synced with the next storage flush.
+    public CompletableFuture<Void> appendEvent(CalorieEvent event) {
+        return submit(() -> {
+            eventLog().append(event);
+            queueFlush();
+            return null;
+        });
+    }
+
+    // The state after the last logged event, or null before the first one; defaultGoal
+    // stands in for a goal no event has set.
+    public CompletableFuture<CalorieState> lastLoggedState(double defaultGoal) {
+        return submit(() -> eventLog().current(defaultGoal));
+    }
+
+    // The state as it was at atMillis, replayed from the event log; null before the first event.
+    public CompletableFuture<CalorieState> stateAt(long atMillis, double defaultGoal) {
+        return submit(() -> eventLog().stateAt(atMillis, defaultGoal));
+    }
+
+    // The logged events with fromMillis <= timestamp <= toMillis, oldest first.
+    public CompletableFuture<List<CalorieEvent>> events(long fromMillis, long toMillis) {
+        return submit(() -> {
+            List<CalorieEvent> events = new ArrayList<>();
+            eventLog().scan(fromMillis, toMillis, events::add);
+            return events;
+        });
+    }
+
+    public CompletableFuture<BmiMeasurement> saveMeasurement(BmiMeasurement measurement) {
+        return submit(() -> bmiHistory().append(measurement));
+    }
+
+    // BMI measurements with fromMillis <= timestamp < toMillis, oldest first.
+    public CompletableFuture<List<BmiMeasurement>> loadMeasurements(long fromMillis, long toMillis) {
+        return submit(() -> bmiHistory().range(fromMillis, toMillis));
+    }
+
+    // Writes every recorded day to a CSV, moved into place atomically so an interrupted
+    // export never leaves a half-written file.
+    public CompletableFuture<Void> exportCsv(Path target) {
+        return submit(() -> {
+            IoGuard.checkNotOnEdt("export " + target);
+            long start = System.nanoTime();
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+                 BufferedWriter writer = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8))) {
+                writer.append("Day,Total Calories\n"); // CSV header
+
+                // The series iterates in date order, so no sorting is needed
+                storage.days().forEach((epochDay, calories) -> {
+                    try {
+                        writer.append(LocalDate.ofEpochDay(epochDay).toString())
+                              .append(",")
+                              .append(String.valueOf(calories))
+                              .append("\n");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                writer.flush();
+                out.force(true); // Otherwise a crash after the rename can leave an empty or partial target
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            EXPORT_TIME.recordSince(start);
+            return null;
+        });
+    }
+
+    // Writes the daily totals and food entries to a compressed archive (see CalorieArchive)
+    // for long-term retention; a fraction of the CSV size and still range-scannable.
+    public CompletableFuture<Void> exportArchive(Path target) {
+        return submit(() -> {
+            long start = System.nanoTime();
+            CalorieArchive.write(target, storage.days(), storage.foodEntries(Long.MIN_VALUE, Long.MAX_VALUE));
+            ARCHIVE_TIME.recordSince(start);
+            return null;
+        });
+    }
+
+    public Path getRecordsCsv() {
+        return directory.resolve(RECORDS_CSV);
+    }
+
+    // Drains queued saves, then syncs and closes the storage.
+    @Override
+    public void close() {
+        io.execute(() -> {
+            try {
+                storage.close();
+            } catch (IOException e) {
+                System.out.println("Error closing calorie storage: " + e.getMessage());
+            }
+            if (eventLog != null) {
+                try {
+                    eventLog.close();
+                } catch (IOException e) {
+                    System.out.println("Error closing calorie event log: " + e.getMessage());
+                }
+            }
+        });
+        io.shutdown();
+        try {
+            io.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private BmiHistoryStore bmiHistory() throws IOException {
+        if (bmiHistory == null) {
+            Files.createDirectories(directory);
+            bmiHistory = BmiHistoryStore.load(directory.resolve(BMI_HISTORY));
+        }
+        return bmiHistory;
+    }
+
+    private CalorieEventLog eventLog() throws IOException {
+        if (eventLog == null) {
+            Files.createDirectories(directory);
+            eventLog = CalorieEventLog.open(directory.resolve(EVENT_LOG), directory.resolve(EVENT_SNAPSHOTS));
+        }
+        return eventLog;
+    }
+
+    // One-time import of the legacy CSV records. Bad rows (e.g. an unparseable date) are
+    // quarantined instead of failing the load.
+    private void importCsv(Path csv) throws IOException {
+        if (!Files.exists(csv)) {
+            return;
+        }
+        CsvImporter.Result result = new CsvImporter(CsvImporter.Mapping.legacy(), null)
+            .run(csv, quarantinePath(csv), storage::importDay);
+        if (result.rejected > 0) {
+            System.out.println("Skipped " + result.rejected + " bad rows in " + csv + ", see " + result.quarantine);
+        }
+    }
+
+    private Path quarantinePath(Path csv) {
+        return directory.resolve(csv.getFileName() + ".rejected.csv");
+    }
+
+    // Queues one storage and event log flush behind the tasks already waiting, so a burst of saves
+    // reaches the storage as one batch.
+    private void queueFlush() {
+        if (flushQueued) {
+            return;
+        }
+        try {
+            io.execute(() -> {
+                flushQueued = false;
+                try {
+                    storage.flush();
+                    if (eventLog != null) {
+                        eventLog.flush();
+                    }
+                } catch (IOException e) {
+                    System.out.println("Error saving calorie records: " + e.getMessage());
+                }
+            });
+            flushQueued = true;
+        } catch (RejectedExecutionException e) {
+            // Closing; the storage flushes when it is closed
+        }
+    }
+
+    @FunctionalInterface
+    private interface IoTask<T> {
+        T call() throws IOException;
+    }
+
+    private <T> CompletableFuture<T> submit(IoTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        io.execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (IOException e) {
+                future.completeExceptionally(new UncheckedIOException(e));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+}
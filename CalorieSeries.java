@@ -0,0 +1,143 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// Daily calorie totals held in one contiguous int[] indexed by epoch day.
+// get/put are a single array access, the first and last recorded days are tracked
+// as the series changes, and forEach walks the array in date order, so readers never
+// need to copy or sort keys. Days without a record hold EMPTY.
+public class CalorieSeries {
+    public static final int EMPTY = DayStore.EMPTY;
+
+    private static final int MIN_CAPACITY = 64;
+
+    private int[] values;
+    private long baseDay;
+    private long firstDay = Long.MAX_VALUE;
+    private long lastDay = Long.MIN_VALUE;
+    private int count;
+
+    public CalorieSeries() {
+        values = new int[0];
+    }
+
+    // Bulk-copies the day-store into a new series with a single transfer.
+    public static CalorieSeries copyOf(DayStore store) {
+        CalorieSeries series = new CalorieSeries();
+        if (!store.isEmpty()) {
+            series.baseDay = store.firstDay();
+            series.values = new int[(int) (store.lastDay() - store.firstDay()) + 1];
+            store.read(store.firstDay(), series.values);
+            series.firstDay = store.firstDay();
+            series.lastDay = store.lastDay();
+            series.count = store.size();
+        }
+        return series;
+    }
+
+    public CalorieSeries copy() {
+        CalorieSeries copy = new CalorieSeries();
+        copy.values = values.clone();
+        copy.baseDay = baseDay;
+        copy.firstDay = firstDay;
+        copy.lastDay = lastDay;
+        copy.count = count;
+        return copy;
+    }
+
+    public int get(long epochDay) {
+        long slot = epochDay - baseDay;
+        if (slot < 0 || slot >= values.length) {
+            return EMPTY;
+        }
+        return values[(int) slot];
+    }
+
+    public int get(LocalDate date) {
+        return get(date.toEpochDay());
+    }
+
+    public boolean containsKey(LocalDate date) {
+        return get(date.toEpochDay()) != EMPTY;
+    }
+
+    public void put(LocalDate date, int calories) {
+        put(date.toEpochDay(), calories);
+    }
+
+    public void put(long epochDay, int calories) {
+        ensureSlot(epochDay);
+        int slot = (int) (epochDay - baseDay);
+        if (values[slot] == EMPTY) {
+            count++;
+        }
+        values[slot] = calories;
+        firstDay = Math.min(firstDay, epochDay);
+        lastDay = Math.max(lastDay, epochDay);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    // Only meaningful when the series is not empty.
+    public long firstDay() {
+        return firstDay;
+    }
+
+    public long lastDay() {
+        return lastDay;
+    }
+
+    // Visits every recorded day in date order.
+    public void forEach(DayConsumer consumer) {
+        forEachInRange(firstDay, lastDay, consumer);
+    }
+
+    // Visits the recorded days in [fromDay, toDay] in date order.
+    public void forEachInRange(long fromDay, long toDay, DayConsumer consumer) {
+        // Clamped to the recorded days before subtracting, so far-off bounds such as
+        // Long.MIN_VALUE cannot overflow into a bogus array index
+        long start = Math.max(fromDay, firstDay);
+        long end = Math.min(toDay, lastDay);
+        if (count == 0 || start > end) {
+            return;
+        }
+        int from = (int) (start - baseDay);
+        int to = (int) (end - baseDay);
+        for (int i = from; i <= to; i++) {
+            int calories = values[i];
+            if (calories != EMPTY) {
+                consumer.accept(baseDay + i, calories);
+            }
+        }
+    }
+
+    // Grows the array geometrically in whichever direction the new day falls,
+    // so a run of puts before or after the current range is amortized O(1).
+    private void ensureSlot(long epochDay) {
+        if (values.length == 0) {
+            baseDay = epochDay - MIN_CAPACITY / 2;
+            values = new int[MIN_CAPACITY];
+            Arrays.fill(values, EMPTY);
+            return;
+        }
+        long slot = epochDay - baseDay;
+        if (slot >= 0 && slot < values.length) {
+            return;
+        }
+        int grow = Math.max(values.length, (int) Math.max(-slot, slot - values.length + 1));
+        int[] grown = new int[values.length + grow];
+        Arrays.fill(grown, EMPTY);
+        if (slot < 0) {
+            System.arraycopy(values, 0, grown, grow, values.length);
+            baseDay -= grow;
+        } else {
+            System.arraycopy(values, 0, grown, 0, values.length);
+        }
+        values = grown;
+    }
+}
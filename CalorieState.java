@@ -0,0 +1,67 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Immutable snapshot of today's calorie state, published by CalorieStateModel after every
+// change. Readers on any thread can hold on to one without locking.
+public final class CalorieState {
+    private final long version;
+    private final LocalDate day;
+    private final int dailyCalories;
+    private final double calorieGoal;
+    private final List<FoodEntry> todayEntries;
+
+    CalorieState(long version, LocalDate day, int dailyCalories, double calorieGoal, List<FoodEntry> todayEntries) {
+        this.version = version;
+        this.day = day;
+        this.dailyCalories = dailyCalories;
+        this.calorieGoal = calorieGoal;
+        this.todayEntries = todayEntries;
+    }
+
+    static CalorieState initial(LocalDate day, double calorieGoal) {
+        return new CalorieState(0, day, 0, calorieGoal, Collections.emptyList());
+    }
+
+    CalorieState withEntry(FoodEntry entry) {
+        List<FoodEntry> entries = new ArrayList<>(todayEntries.size() + 1);
+        entries.addAll(todayEntries);
+        entries.add(entry);
+        return new CalorieState(version + 1, day, dailyCalories + entry.getCalories(), calorieGoal,
+            Collections.unmodifiableList(entries));
+    }
+
+    CalorieState withDailyCalories(int calories) {
+        return new CalorieState(version + 1, day, calories, calorieGoal, todayEntries);
+    }
+
+    CalorieState withGoal(double goal) {
+        return new CalorieState(version + 1, day, dailyCalories, goal, todayEntries);
+    }
+
+    CalorieState cleared(LocalDate newDay) {
+        return new CalorieState(version + 1, newDay, 0, calorieGoal, Collections.emptyList());
+    }
+
+    // Increases by one with every published change.
+    public long getVersion() {
+        return version;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public int getDailyCalories() {
+        return dailyCalories;
+    }
+
+    public double getCalorieGoal() {
+        return calorieGoal;
+    }
+
+    public List<FoodEntry> getTodayEntries() {
+        return todayEntries;
+    }
+}
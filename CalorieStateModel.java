@@ -0,0 +1,288 @@
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Single writer for all calorie state. Every mutation is a command run in order on the
+// "calorie-state" thread, which alone touches the daily totals series; after each command
+// it publishes a new immutable CalorieState. Callers on the EDT, the rollover timer or
+// anywhere else only enqueue commands and read snapshots, so there is nothing to race on.
+// Every change is also appended to the CalorieEventLog, which restores today's log on the
+// next start and can rebuild the state at any earlier instant.
+public class CalorieStateModel implements Closeable {
+    // Called on the state thread; UI listeners must hop to the EDT themselves.
+    public interface Listener {
+        void stateChanged(CalorieState state);
+
+        // A day's total changed, including days other than today.
+        default void dayChanged(LocalDate date, int calories) {
+        }
+
+        // Many days changed at once (an import); re-read them with copyRecords().
+        default void recordsReloaded() {
+        }
+    }
+
+    private static final Metrics.Histogram ROLLOVER_TIME = Metrics.histogram("day.rollover");
+    private static final Metrics.Histogram CLEAR_TIME = Metrics.histogram("log.clear");
+    private static final Metrics.Counter FOOD_LOGGED = Metrics.counter("food.logged");
+
+    private final CaloriePersistence persistence;
+    private final ExecutorService actor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "calorie-state");
+        t.setDaemon(true);
+        return t;
+    });
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Clock clock;
+    private final double defaultGoal; // The goal before any logged change
+    private volatile CalorieState state;
+    private CalorieSeries records = new CalorieSeries(); // Confined to the state thread
+    private final List<CalorieSeries> savedDuringImport = new ArrayList<>(); // One per running import; state thread only
+
+    public CalorieStateModel(CaloriePersistence persistence, double calorieGoal) {
+        this(persistence, calorieGoal, Clock.systemDefaultZone());
+    }
+
+    // The clock only decides which day the model starts on; rollover() moves it forward.
+    public CalorieStateModel(CaloriePersistence persistence, double calorieGoal, Clock clock) {
+        this.persistence = persistence;
+        this.clock = clock;
+        this.defaultGoal = calorieGoal;
+        this.state = CalorieState.initial(LocalDate.now(clock), calorieGoal);
+    }
+
+    public CalorieState current() {
+        return state;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    // Loads the records and restores the goal and, if the log is still on today, today's
+    // food entries from the event log; commands sent meanwhile queue up behind the load.
+    // The records stay authoritative for today's total. Completes with a private copy of
+    // the daily totals the caller may keep in sync via dayChanged.
+    public CompletableFuture<CalorieSeries> load() {
+        return submit(() -> {
+            records = persistence.load().join();
+            CalorieState logged = persistence.lastLoggedState(defaultGoal).join();
+            CalorieState next = state;
+            if (logged != null && logged.getDay().equals(state.getDay())) {
+                next = new CalorieState(state.getVersion() + 1, state.getDay(), logged.getDailyCalories(),
+                    logged.getCalorieGoal(), logged.getTodayEntries());
+            } else if (logged != null) {
+                next = state.withGoal(logged.getCalorieGoal());
+                if (logged.getDay().isBefore(state.getDay())) {
+                    log(CalorieEvent.dayRolled(clock.millis(), state.getDay()));
+                }
+            }
+            int today = records.get(state.getDay());
+            if (today != CalorieSeries.EMPTY && today != next.getDailyCalories()) {
+                next = next.withDailyCalories(today);
+                log(CalorieEvent.totalSet(clock.millis(), state.getDay(), today));
+            }
+            if (next != state) {
+                publish(next);
+            }
+            return records.copy();
+        });
+    }
+
+    // A copy of the daily totals as of every command queued before this call.
+    public CompletableFuture<CalorieSeries> copyRecords() {
+        return submit(() -> records.copy()); // Reads records when the command runs, after any queued load
+    }
+
+    // The recorded days in [from, to], as of every command queued before this call. Days
+    // before the first live record come from the profile's archive, if it has one.
+    public CompletableFuture<CalorieSeries> range(LocalDate from, LocalDate to) {
+        return submit(() -> {
+            CalorieSeries days = new CalorieSeries();
+            records.forEachInRange(from.toEpochDay(), to.toEpochDay(), days::put);
+            long liveFrom = records.isEmpty() ? Long.MAX_VALUE : records.firstDay();
+            if (from.toEpochDay() >= liveFrom) {
+                return CompletableFuture.completedFuture(days);
+            }
+            // Scanned on the persistence thread; the state thread moves on meanwhile
+            return persistence.archivedDays(from.toEpochDay(), Math.min(to.toEpochDay(), liveFrom - 1))
+                .thenApply(archived -> {
+                    archived.forEach(days::put);
+                    return days;
+                });
+        }).thenCompose(days -> days);
+    }
+
+    public CompletableFuture<CalorieState> addFood(FoodEntry entry) {
+        return submit(() -> {
+            FOOD_LOGGED.increment();
+            CalorieState next = state.withEntry(entry);
+            persistence.saveFoodEntry(entry).whenComplete(CalorieStateModel::logSaveError);
+            log(CalorieEvent.foodAdded(clock.millis(), next.getDay(), entry));
+            putRecord(next.getDay(), next.getDailyCalories());
+            return publish(next);
+        });
+    }
+
+    // Imports a CSV of daily totals; today's total follows the file if it contains today.
+    // The import runs on the persistence thread, so commands keep running meanwhile; once
+    // it is done a second command swaps in the reloaded totals. Days saved in between are
+    // kept in savedDuringImport and laid over the reloaded copy, since their saves were
+    // queued after the snapshot was taken.
+    public CompletableFuture<CsvImporter.Result> importRecords(Path csv, CsvImporter.Mapping mapping,
+            CsvImporter.ProgressListener progress) {
+        return submit(() -> {
+            // Queued from the state thread, behind the saves of every earlier command
+            CompletableFuture<CsvImporter.Result> imported = persistence.importRecords(csv, mapping, progress);
+            CompletableFuture<CalorieSeries> reloaded = persistence.snapshot();
+            CalorieSeries savedSince = new CalorieSeries();
+            savedDuringImport.add(savedSince);
+            return reloaded.handle((days, reloadError) -> submit(() -> {
+                savedDuringImport.remove(savedSince);
+                if (days != null) {
+                    swapRecords(days, savedSince);
+                }
+                return imported.join(); // Already done, as the snapshot ran after it; rethrows its error
+            })).thenCompose(swap -> swap);
+        }).thenCompose(importing -> importing);
+    }
+
+    private void swapRecords(CalorieSeries reloaded, CalorieSeries savedSince) {
+        savedSince.forEach(reloaded::put);
+        records = reloaded;
+        int today = records.get(state.getDay());
+        if (today != CalorieSeries.EMPTY && today != state.getDailyCalories()) {
+            log(CalorieEvent.totalSet(clock.millis(), state.getDay(), today));
+            publish(state.withDailyCalories(today));
+        }
+        for (Listener listener : listeners) {
+            listener.recordsReloaded();
+        }
+    }
+
+    public CompletableFuture<CalorieState> clearLog() {
+        return submit(() -> {
+            long start = System.nanoTime();
+            CalorieState next = state.cleared(state.getDay());
+            putRecord(next.getDay(), 0);
+            log(CalorieEvent.logCleared(clock.millis(), next.getDay()));
+            publish(next);
+            CLEAR_TIME.recordSince(start);
+            return next;
+        });
+    }
+
+    public CompletableFuture<CalorieState> setGoal(double calorieGoal) {
+        return submit(() -> {
+            log(CalorieEvent.goalChanged(clock.millis(), state.getDay(), calorieGoal));
+            return publish(state.withGoal(calorieGoal));
+        });
+    }
+
+    // Saves the measurement to the BMI history and logs it against the current day.
+    public CompletableFuture<BmiMeasurement> recordMeasurement(BmiMeasurement measurement) {
+        return submit(() -> {
+            log(CalorieEvent.bmiComputed(state.getDay(), measurement));
+            return persistence.saveMeasurement(measurement);
+        }).thenCompose(f -> f);
+    }
+
+    // The state as it was at atMillis, or null before the first logged event. Queued behind
+    // pending commands, so their events are included.
+    public CompletableFuture<CalorieState> stateAt(long atMillis) {
+        return submit(() -> persistence.stateAt(atMillis, defaultGoal)).thenCompose(f -> f);
+    }
+
+    // The logged events with fromMillis <= timestamp <= toMillis, oldest first.
+    public CompletableFuture<List<CalorieEvent>> events(long fromMillis, long toMillis) {
+        return submit(() -> persistence.events(fromMillis, toMillis)).thenCompose(f -> f);
+    }
+
+    // Closes the current day, saving its total if it was never recorded, and starts a fresh
+    // log on newDay. Days that are not after the current one are ignored.
+    public CompletableFuture<CalorieState> rollover(LocalDate newDay) {
+        return submit(() -> {
+            LocalDate previous = state.getDay();
+            if (!newDay.isAfter(previous)) {
+                return state;
+            }
+            long start = System.nanoTime();
+            if (!records.containsKey(previous)) {
+                putRecord(previous, state.getDailyCalories());
+            }
+            if (!records.containsKey(newDay)) {
+                putRecord(newDay, 0); // Initialize the new day's record with 0 calories
+            }
+            log(CalorieEvent.dayRolled(clock.millis(), newDay));
+            CalorieState next = publish(state.cleared(newDay));
+            ROLLOVER_TIME.recordSince(start);
+            return next;
+        });
+    }
+
+    // Queued behind pending commands, so the file includes every change made before the call.
+    public CompletableFuture<Void> exportCsv(Path target) {
+        return submit(() -> persistence.exportCsv(target)).thenCompose(f -> f);
+    }
+
+    public CompletableFuture<Void> exportArchive(Path target) {
+        return submit(() -> persistence.exportArchive(target)).thenCompose(f -> f);
+    }
+
+    public Path getRecordsCsv() {
+        return persistence.getRecordsCsv();
+    }
+
+    @Override
+    public void close() {
+        actor.shutdown();
+        try {
+            actor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        persistence.close();
+    }
+
+    private void putRecord(LocalDate date, int calories) {
+        records.put(date, calories);
+        for (CalorieSeries saved : savedDuringImport) {
+            saved.put(date, calories);
+        }
+        persistence.saveDay(date, calories).whenComplete(CalorieStateModel::logSaveError);
+        for (Listener listener : listeners) {
+            listener.dayChanged(date, calories);
+        }
+    }
+
+    private void log(CalorieEvent event) {
+        persistence.appendEvent(event).whenComplete(CalorieStateModel::logSaveError);
+    }
+
+    private CalorieState publish(CalorieState next) {
+        state = next;
+        for (Listener listener : listeners) {
+            listener.stateChanged(next);
+        }
+        return next;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> command) {
+        return CompletableFuture.supplyAsync(command, actor);
+    }
+
+    private static void logSaveError(Void ignored, Throwable error) {
+        if (error != null) {
+            System.out.println("Error saving records: " + error.getMessage());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+// Where one profile's daily totals and food entries are kept. CaloriePersistence calls a
+// storage only from its I/O thread, in order, so implementations need no locking of their
+// own. FileCalorieStorage (day-store, food entry store and journal in the profile
+// directory) is the default; with -Dcalorie.jdbcUrl every profile is kept in one SQL
+// database instead (JdbcCalorieStorage).
+public interface CalorieStorage extends Closeable {
+    String JDBC_URL_PROPERTY = "calorie.jdbcUrl";
+
+    // Runs the one-time import of the legacy CSV into a newly created store.
+    @FunctionalInterface
+    interface LegacyImport {
+        void run() throws IOException;
+    }
+
+    static CalorieStorage forProfile(Path directory, String profile) {
+        String url = System.getProperty(JDBC_URL_PROPERTY);
+        if (url == null || url.isEmpty()) {
+            return new FileCalorieStorage(directory);
+        }
+        return new JdbcCalorieStorage(url, profile);
+    }
+
+    // Opens or creates the store. legacyImport runs only when the store was just created,
+    // before anything else is applied, and feeds its rows through importDay; if the process
+    // dies before the import completes, it runs again on the next open.
+    void open(LegacyImport legacyImport) throws IOException;
+
+    // A copy of every recorded daily total.
+    CalorieSeries days() throws IOException;
+
+    void putDay(long epochDay, int calories) throws IOException;
+
+    void addFoodEntry(FoodEntry entry) throws IOException;
+
+    // Bulk replacement of many days (an import), durable once finishImport returns.
+    // Being a DayConsumer target, it reports I/O failures as UncheckedIOException.
+    void importDay(long epochDay, int calories);
+
+    void finishImport() throws IOException;
+
+    // Called when the I/O queue runs dry, so buffered writes go out as one batch.
+    void flush() throws IOException;
+
+    // Entries logged in [fromMillis, toMillis), in the order they were logged.
+    List<FoodEntry> foodEntries(long fromMillis, long toMillis) throws IOException;
+
+    // Total calories per food name for entries logged in [fromMillis, toMillis), largest first.
+    Map<String, Long> caloriesByFood(long fromMillis, long toMillis) throws IOException;
+
+    // The earliest timestamp of any food entry, or Long.MAX_VALUE if none was logged.
+    long firstFoodEntryMillis() throws IOException;
+
+    // Calories of the food entries logged on each local day in [fromDay, toDay]; index 0 is fromDay.
+    int[] dailyFoodCalories(long fromDay, long toDay) throws IOException;
+
+    // The same per 7-day week from fromDay, and per calendar month from the given month.
+    int[] weeklyFoodCalories(long fromDay, int weeks) throws IOException;
+
+    int[] monthlyFoodCalories(YearMonth from, int months) throws IOException;
+
+    // Entry count, calories and macros of the food entries logged in [fromDay, toDay].
+    FoodEntryStore.NutrientTotals nutrientTotals(long fromDay, long toDay) throws IOException;
+}
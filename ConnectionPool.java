@@ -0,0 +1,155 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Small blocking pool of JDBC connections to one database URL, shared by every profile's
+// storage in the JVM. Connections are opened on demand up to the pool size, checked on
+// checkout and replaced if broken, and all closed when the last user releases the pool;
+// one still checked out then is closed when it is given back.
+// The driver is found by DriverManager on the classpath; -Dcalorie.jdbcDriver names a
+// driver class to load first, for drivers that do not register themselves.
+final class ConnectionPool {
+    private static final int VALIDATE_TIMEOUT_SECONDS = 2;
+    private static final long CHECKOUT_TIMEOUT_SECONDS = 30;
+    private static final Map<String, ConnectionPool> pools = new HashMap<>();
+
+    private final String url;
+    private final BlockingQueue<Connection> idle;
+    private final int maxSize;
+    private final Set<Connection> opened = new HashSet<>(); // Idle and checked out; guarded by this
+    private boolean closed;
+    private int users;
+
+    private ConnectionPool(String url, int maxSize) {
+        this.url = url;
+        this.maxSize = maxSize;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    // The pool for url, created on first use; pair every call with release().
+    static ConnectionPool acquire(String url) throws SQLException {
+        synchronized (pools) {
+            ConnectionPool pool = pools.get(url);
+            if (pool == null) {
+                String driver = System.getProperty("calorie.jdbcDriver");
+                if (driver != null) {
+                    try {
+                        Class.forName(driver);
+                    } catch (ClassNotFoundException e) {
+                        throw new SQLException("JDBC driver not on the classpath: " + driver, e);
+                    }
+                }
+                pool = new ConnectionPool(url, Math.max(1, Integer.getInteger("calorie.jdbcPoolSize", 4)));
+                pools.put(url, pool);
+            }
+            pool.users++;
+            return pool;
+        }
+    }
+
+    void release() {
+        synchronized (pools) {
+            if (--users > 0) {
+                return;
+            }
+            pools.remove(url);
+        }
+        List<Connection> idleNow = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            idle.drainTo(idleNow);
+            opened.removeAll(idleNow);
+        }
+        for (Connection c : idleNow) {
+            closeQuietly(c);
+        }
+    }
+
+    // An idle connection, a new one while under the pool size, or the next one returned.
+    Connection take() throws SQLException {
+        Connection c;
+        while ((c = idle.poll()) != null) {
+            if (isUsable(c)) {
+                return c;
+            }
+            discard(c);
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new SQLException("Connection pool for " + url + " is closed");
+            }
+            if (opened.size() < maxSize) {
+                Connection fresh = DriverManager.getConnection(url);
+                opened.add(fresh);
+                return fresh;
+            }
+        }
+        try {
+            c = idle.poll(CHECKOUT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a connection to " + url, e);
+        }
+        if (c == null) {
+            throw new SQLException("No connection to " + url + " free after " + CHECKOUT_TIMEOUT_SECONDS + " s");
+        }
+        if (!isUsable(c)) {
+            discard(c);
+            return take();
+        }
+        return c;
+    }
+
+    // Returns a connection; one left mid-transaction is rolled back first. After the pool
+    // is released, the connection is closed instead.
+    void give(Connection c) {
+        try {
+            if (!c.getAutoCommit()) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(c);
+            return;
+        }
+        boolean pooled;
+        synchronized (this) {
+            pooled = !closed && idle.offer(c);
+        }
+        if (!pooled) {
+            discard(c);
+        }
+    }
+
+    private static boolean isUsable(Connection c) {
+        try {
+            return c.isValid(VALIDATE_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(Connection c) {
+        closeQuietly(c);
+        synchronized (this) {
+            opened.remove(c);
+        }
+    }
+
+    private static void closeQuietly(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException e) {
+            System.out.println("Error closing database connection: " + e.getMessage());
+        }
+    }
+}
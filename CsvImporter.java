@@ -0,0 +1,480 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Streaming importer for daily calorie CSVs, from our own exports or other trackers.
+// The file is memory-mapped and cut into chunks at line boundaries; chunks are tokenized
+// in parallel straight from the mapped bytes (no String per line or field on the ISO
+// date path) into primitive day/calorie columns, then handed to the sink in file order.
+// Rows that fail to parse or validate never abort the import: they are written to a
+// quarantine file with their byte offset and the reason.
+public class CsvImporter {
+    private static final int MIN_CHUNK_BYTES = 4 << 20;
+    static final int MAX_CALORIES = 100_000; // Per row; anything above is a bad column mapping
+    static final int MAX_DAY_CALORIES = MAX_CALORIES * 100; // Per day when duplicate days are summed
+    private static final long PROGRESS_STEP = 1 << 20;
+
+    // Called from worker threads as chunks are parsed.
+    public interface ProgressListener {
+        void progress(long bytesDone, long totalBytes);
+    }
+
+    // Which columns hold the date and the calories, and how to read them.
+    public static final class Mapping {
+        final char delimiter;
+        final boolean hasHeader;
+        final int dateColumn;
+        final int caloriesColumn;
+        final DateTimeFormatter dateFormat; // Null for ISO yyyy-MM-dd, which has a fast path
+        final boolean sumDuplicates;
+
+        public Mapping(char delimiter, boolean hasHeader, int dateColumn, int caloriesColumn,
+                String datePattern, boolean sumDuplicates) {
+            this.delimiter = delimiter;
+            this.hasHeader = hasHeader;
+            this.dateColumn = dateColumn;
+            this.caloriesColumn = caloriesColumn;
+            this.dateFormat = datePattern == null ? null : DateTimeFormatter.ofPattern(datePattern, Locale.ROOT);
+            this.sumDuplicates = sumDuplicates;
+        }
+
+        // The app's own "Day,Total Calories" format; a later row for the same day wins.
+        public static Mapping legacy() {
+            return new Mapping(',', true, 0, 1, null, false);
+        }
+
+        // Picks the date and calorie columns from a header row by name (e.g. "Date",
+        // "Day", "Calories", "Energy (kcal)"). Rows for the same day are summed, since
+        // other trackers usually export one row per meal or food.
+        public static Mapping fromHeader(String headerLine, char delimiter, String datePattern) {
+            String[] names = headerLine.split(Character.toString(delimiter), -1);
+            int dateColumn = -1;
+            int caloriesColumn = -1;
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i].trim().replace("\"", "").toLowerCase(Locale.ROOT);
+                if (dateColumn < 0 && (name.contains("date") || name.equals("day"))) {
+                    dateColumn = i;
+                } else if (caloriesColumn < 0 && (name.contains("calor") || name.contains("kcal") || name.contains("energy"))) {
+                    caloriesColumn = i;
+                }
+            }
+            if (dateColumn < 0 || caloriesColumn < 0) {
+                throw new IllegalArgumentException("No date and calories columns in header: " + headerLine);
+            }
+            return new Mapping(delimiter, true, dateColumn, caloriesColumn, datePattern, true);
+        }
+    }
+
+    // Totals of one import.
+    public static final class Result {
+        public final long rows;
+        public final long rejected;
+        public final long bytes;
+        public final long nanos;
+        public final Path quarantine; // Null when no row was rejected
+
+        Result(long rows, long rejected, long bytes, long nanos, Path quarantine) {
+            this.rows = rows;
+            this.rejected = rejected;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.quarantine = quarantine;
+        }
+
+        public double megabytesPerSecond() {
+            return nanos == 0 ? 0 : bytes / 1e6 / (nanos / 1e9);
+        }
+    }
+
+    private final Mapping mapping;
+    private final ProgressListener progress;
+    private final long lastDay = DayStore.lastStorableDay();
+
+    public CsvImporter(Mapping mapping, ProgressListener progress) {
+        this.mapping = mapping;
+        this.progress = progress;
+    }
+
+    // The first line of a file, e.g. to build a Mapping from its header.
+    public static String readHeader(Path csv) throws IOException {
+        IoGuard.checkNotOnEdt("read " + csv);
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            return line == null ? "" : line;
+        }
+    }
+
+    // Parses csv and passes every valid (day, calories) to sink on the calling thread, in
+    // file order (or once per day with the summed calories). Rejected rows go to quarantine,
+    // which is only created when there is at least one.
+    public Result run(Path csv, Path quarantine, DayConsumer sink) throws IOException {
+        IoGuard.checkNotOnEdt("import " + csv);
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] bounds = chunkBounds(channel, size);
+            AtomicLong done = new AtomicLong();
+
+            List<CompletableFuture<Chunk>> chunks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long from = bounds[i];
+                long to = bounds[i + 1];
+                boolean skipHeader = i == 0 && mapping.hasHeader;
+                MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+                chunks.add(CompletableFuture.supplyAsync(() -> new Chunk(bytes, from, skipHeader, done, size)));
+            }
+
+            CalorieSeries sums = mapping.sumDuplicates ? new CalorieSeries() : null;
+            long rows = 0;
+            long rejected = 0;
+            long clamped = 0;
+            BufferedWriter quarantineWriter = null;
+            try {
+                for (CompletableFuture<Chunk> future : chunks) {
+                    Chunk chunk = join(future);
+                    for (int r = 0; r < chunk.rows; r++) {
+                        if (sums != null) {
+                            int before = sums.get(chunk.days[r]);
+                            long sum = (before == CalorieSeries.EMPTY ? 0L : before) + chunk.calories[r];
+                            if (sum > MAX_DAY_CALORIES) {
+                                sum = MAX_DAY_CALORIES;
+                                clamped++;
+                            }
+                            sums.put(chunk.days[r], (int) sum);
+                        } else {
+                            sink.accept(chunk.days[r], chunk.calories[r]);
+                        }
+                    }
+                    rows += chunk.rows;
+                    rejected += chunk.rejected;
+                    if (chunk.rejects.length() > 0) {
+                        if (quarantineWriter == null) {
+                            quarantineWriter = Files.newBufferedWriter(quarantine, StandardCharsets.UTF_8);
+                            quarantineWriter.append("offset,reason,line\n");
+                        }
+                        quarantineWriter.append(chunk.rejects);
+                    }
+                }
+            } finally {
+                if (quarantineWriter != null) {
+                    quarantineWriter.close();
+                }
+            }
+            if (sums != null) {
+                if (clamped > 0) {
+                    System.out.println("Import: " + clamped + " rows pushed a day past " + MAX_DAY_CALORIES
+                        + " kcal; those days were capped");
+                }
+                sums.forEach(sink);
+            }
+            return new Result(rows, rejected, size, System.nanoTime() - start, rejected > 0 ? quarantine : null);
+        }
+    }
+
+    // Chunk start offsets plus the file size; every start is just after a '\n'.
+    private static long[] chunkBounds(FileChannel channel, long size) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long chunkBytes = Math.max(MIN_CHUNK_BYTES, size / (cores * 4L) + 1);
+        long[] bounds = new long[(int) (size / chunkBytes) + 2];
+        int count = 0;
+        bounds[count++] = 0;
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long pos = chunkBytes;
+        while (pos < size) {
+            long lineEnd = -1;
+            for (long scan = pos; lineEnd < 0 && scan < size; scan += probe.capacity()) {
+                probe.clear();
+                int n = channel.read(probe, scan);
+                for (int i = 0; i < n; i++) {
+                    if (probe.get(i) == '\n') {
+                        lineEnd = scan + i + 1;
+                        break;
+                    }
+                }
+            }
+            if (lineEnd < 0 || lineEnd >= size) {
+                break;
+            }
+            bounds[count++] = lineEnd;
+            pos = lineEnd + chunkBytes;
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private static Chunk join(CompletableFuture<Chunk> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // One parsed chunk: valid rows as columns, rejected rows as quarantine text.
+    private final class Chunk {
+        int[] days = new int[1024];
+        int[] calories = new int[1024];
+        int rows;
+        int rejected;
+        final StringBuilder rejects = new StringBuilder();
+
+        private final MappedByteBuffer bytes;
+        private final long baseOffset;
+        private String reason;
+
+        Chunk(MappedByteBuffer bytes, long baseOffset, boolean skipHeader, AtomicLong done, long totalBytes) {
+            this.bytes = bytes;
+            this.baseOffset = baseOffset;
+            int limit = bytes.limit();
+            int lineStart = 0;
+            int reported = 0;
+            if (skipHeader) {
+                lineStart = lineEnd(0, limit) + 1;
+            }
+            while (lineStart < limit) {
+                int end = lineEnd(lineStart, limit);
+                parseLine(lineStart, end);
+                lineStart = end + 1;
+                if (progress != null && lineStart - reported >= PROGRESS_STEP) {
+                    progress.progress(done.addAndGet(lineStart - reported), totalBytes);
+                    reported = lineStart;
+                }
+            }
+            long total = done.addAndGet(limit - reported);
+            if (progress != null) {
+                progress.progress(total, totalBytes);
+            }
+        }
+
+        private int lineEnd(int from, int limit) {
+            for (int i = from; i < limit; i++) {
+                if (bytes.get(i) == '\n') {
+                    return i;
+                }
+            }
+            return limit;
+        }
+
+        // Finds the two mapped fields in [start, end) and validates them.
+        private void parseLine(int start, int end) {
+            if (end > start && bytes.get(end - 1) == '\r') {
+                end--;
+            }
+            if (end == start) {
+                return; // Blank line
+            }
+            int dateStart = -1;
+            int dateEnd = -1;
+            int calStart = -1;
+            int calEnd = -1;
+            int field = 0;
+            int pos = start;
+            while (pos <= end) {
+                int fieldStart = pos;
+                int fieldEnd;
+                if (pos < end && bytes.get(pos) == '"') {
+                    // Quoted field: runs to the closing quote; "" inside is an escaped quote
+                    fieldStart = pos + 1;
+                    pos++;
+                    while (pos < end && !(bytes.get(pos) == '"' && (pos + 1 >= end || bytes.get(pos + 1) != '"'))) {
+                        pos += bytes.get(pos) == '"' ? 2 : 1;
+                    }
+                    fieldEnd = pos;
+                    while (pos < end && bytes.get(pos) != mapping.delimiter) {
+                        pos++;
+                    }
+                } else {
+                    while (pos < end && bytes.get(pos) != mapping.delimiter) {
+                        pos++;
+                    }
+                    fieldEnd = pos;
+                }
+                if (field == mapping.dateColumn) {
+                    dateStart = fieldStart;
+                    dateEnd = fieldEnd;
+                }
+                if (field == mapping.caloriesColumn) {
+                    calStart = fieldStart;
+                    calEnd = fieldEnd;
+                }
+                field++;
+                pos++; // Past the delimiter
+            }
+            if (dateStart < 0 || calStart < 0) {
+                reject(start, end, "missing column");
+                return;
+            }
+            long day = parseDate(trimStart(dateStart, dateEnd), trimEnd(dateStart, dateEnd));
+            if (day == Long.MIN_VALUE) {
+                reject(start, end, reason);
+                return;
+            }
+            long kcal = parseCalories(trimStart(calStart, calEnd), trimEnd(calStart, calEnd));
+            if (kcal == Long.MIN_VALUE) {
+                reject(start, end, reason);
+                return;
+            }
+            if (rows == days.length) {
+                days = Arrays.copyOf(days, rows * 2);
+                calories = Arrays.copyOf(calories, rows * 2);
+            }
+            days[rows] = (int) day;
+            calories[rows] = (int) kcal;
+            rows++;
+        }
+
+        // Epoch day, or Long.MIN_VALUE with reason set.
+        private long parseDate(int start, int end) {
+            long day;
+            if (mapping.dateFormat == null) {
+                day = parseIsoDate(start, end);
+                if (day == Long.MIN_VALUE) {
+                    reason = "invalid date";
+                    return day;
+                }
+            } else {
+                try {
+                    day = LocalDate.parse(text(start, end), mapping.dateFormat).toEpochDay();
+                } catch (DateTimeParseException e) {
+                    reason = "invalid date";
+                    return Long.MIN_VALUE;
+                }
+            }
+            if (day < 0) {
+                reason = "date before 1970";
+                return Long.MIN_VALUE;
+            }
+            if (day > lastDay) {
+                reason = "date more than a year ahead";
+                return Long.MIN_VALUE;
+            }
+            return day;
+        }
+
+        // yyyy-MM-dd straight from the bytes, validated against the calendar.
+        private long parseIsoDate(int start, int end) {
+            if (end - start != 10 || bytes.get(start + 4) != '-' || bytes.get(start + 7) != '-') {
+                return Long.MIN_VALUE;
+            }
+            int year = digits(start, 4);
+            int month = digits(start + 5, 2);
+            int day = digits(start + 8, 2);
+            if (year < 0 || month < 1 || month > 12 || day < 1) {
+                return Long.MIN_VALUE;
+            }
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            int length = month == 2 ? (leap ? 29 : 28) : (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+            if (day > length) {
+                return Long.MIN_VALUE;
+            }
+            // Days from civil date (proleptic Gregorian), shifted so 1970-01-01 is 0
+            int y = month <= 2 ? year - 1 : year;
+            int era = y / 400;
+            int yoe = y - era * 400;
+            int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+            int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+            return era * 146097L + doe - 719468;
+        }
+
+        private int digits(int start, int count) {
+            int value = 0;
+            for (int i = start; i < start + count; i++) {
+                int d = bytes.get(i) - '0';
+                if (d < 0 || d > 9) {
+                    return -1;
+                }
+                value = value * 10 + d;
+            }
+            return value;
+        }
+
+        // Whole or decimal kcal, rounded; Long.MIN_VALUE with reason set when invalid.
+        private long parseCalories(int start, int end) {
+            if (start == end) {
+                reason = "missing calories";
+                return Long.MIN_VALUE;
+            }
+            long whole = 0;
+            int pos = start;
+            boolean anyDigit = false;
+            while (pos < end && bytes.get(pos) >= '0' && bytes.get(pos) <= '9') {
+                whole = whole * 10 + (bytes.get(pos) - '0');
+                anyDigit = true;
+                if (whole > MAX_CALORIES) {
+                    reason = "calories out of range";
+                    return Long.MIN_VALUE;
+                }
+                pos++;
+            }
+            if (pos < end && bytes.get(pos) == '.') {
+                pos++;
+                if (pos < end && bytes.get(pos) >= '0' && bytes.get(pos) <= '9') {
+                    anyDigit = true;
+                    if (bytes.get(pos) >= '5') {
+                        whole++;
+                    }
+                }
+                while (pos < end && bytes.get(pos) >= '0' && bytes.get(pos) <= '9') {
+                    pos++;
+                }
+            }
+            if (!anyDigit || pos != end) {
+                reason = bytes.get(start) == '-' ? "negative calories" : "invalid calories";
+                return Long.MIN_VALUE;
+            }
+            if (whole > MAX_CALORIES) {
+                reason = "calories out of range";
+                return Long.MIN_VALUE;
+            }
+            return whole;
+        }
+
+        private int trimStart(int start, int end) {
+            while (start < end && bytes.get(start) == ' ') {
+                start++;
+            }
+            return start;
+        }
+
+        private int trimEnd(int start, int end) {
+            while (end > start && bytes.get(end - 1) == ' ') {
+                end--;
+            }
+            return end;
+        }
+
+        private String text(int start, int end) {
+            byte[] raw = new byte[end - start];
+            for (int i = 0; i < raw.length; i++) {
+                raw[i] = bytes.get(start + i);
+            }
+            return new String(raw, StandardCharsets.UTF_8);
+        }
+
+        private void reject(int start, int end, String why) {
+            rejected++;
+            rejects.append(baseOffset + start).append(',').append(why).append(",\"")
+                   .append(text(start, end).replace("\"", "\"\"")).append("\"\n");
+        }
+    }
+}
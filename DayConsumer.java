@@ -0,0 +1,5 @@
+// Callback for walking a day series in date order without boxing or allocating dates.
+@FunctionalInterface
+public interface DayConsumer {
+    void accept(long epochDay, int calories);
+}
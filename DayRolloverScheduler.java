@@ -0,0 +1,144 @@
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Fires once per calendar day at local midnight, instead of on a fixed tick.
+// The thread sleeps until the next midnight of the clock's zone (so 23- and 25-hour DST
+// days come out right) but never longer than the re-check interval; each wake-up only
+// compares dates, so a clock change, time-zone change or suspend is noticed within the
+// interval and every day missed meanwhile is reported in order. Idle cost is one wake-up
+// per interval with no I/O.
+public class DayRolloverScheduler {
+    // -Dcalorie.simulatedDayMillis=60000 makes a simulated day last one real minute
+    static final String SIMULATED_DAY_PROPERTY = "calorie.simulatedDayMillis";
+
+    private static final Duration RECHECK_INTERVAL = Duration.ofHours(1);
+
+    private final Clock clock;
+    private final double speed; // Clock time per unit of real time
+    private final Duration recheckInterval;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "day-rollover");
+        t.setDaemon(true);
+        return t;
+    });
+    private Consumer<LocalDate> onNewDay;
+    private LocalDate lastDay; // Confined to the timer thread after start()
+
+    public DayRolloverScheduler(Clock clock) {
+        this(clock, 1.0, RECHECK_INTERVAL);
+    }
+
+    DayRolloverScheduler(Clock clock, double speed, Duration recheckInterval) {
+        this.clock = clock;
+        this.speed = speed;
+        this.recheckInterval = recheckInterval;
+    }
+
+    // The system clock, or a fast simulated one when the simulation property is set.
+    public static DayRolloverScheduler fromSystemProperties() {
+        String simulated = System.getProperty(SIMULATED_DAY_PROPERTY);
+        if (simulated != null) {
+            try {
+                return simulated(Duration.ofMillis(Long.parseLong(simulated)));
+            } catch (NumberFormatException e) {
+                System.out.println("Ignoring invalid " + SIMULATED_DAY_PROPERTY + ": " + simulated);
+            }
+        }
+        return new DayRolloverScheduler(Clock.systemDefaultZone());
+    }
+
+    // A clock that starts now and runs so a whole day passes in realDayLength.
+    public static DayRolloverScheduler simulated(Duration realDayLength) {
+        double speed = (double) Duration.ofDays(1).toMillis() / Math.max(1, realDayLength.toMillis());
+        ScaledClock clock = new ScaledClock(Clock.systemDefaultZone(), speed);
+        // Re-check a few times per simulated day so missed midnights show up quickly
+        return new DayRolloverScheduler(clock, speed, Duration.ofMillis(Math.max(10, realDayLength.toMillis() / 4)));
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    // Starts watching the date. Nothing fires until the date actually changes.
+    public void start(Consumer<LocalDate> onNewDay) {
+        start(LocalDate.now(clock), onNewDay);
+    }
+
+    // Starts watching from since, the day the caller's data is on. If midnight passed
+    // between that and now (say, during a long load), the missed days fire at once.
+    public void start(LocalDate since, Consumer<LocalDate> onNewDay) {
+        this.onNewDay = onNewDay;
+        timer.execute(() -> {
+            lastDay = since;
+            check();
+        });
+    }
+
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    private void check() {
+        LocalDate today = LocalDate.now(clock);
+        if (today.isBefore(lastDay)) {
+            lastDay = today; // Clock went backwards; wait for the new date to come round again
+        }
+        while (lastDay.isBefore(today)) {
+            lastDay = lastDay.plusDays(1);
+            try {
+                onNewDay.accept(lastDay);
+            } catch (RuntimeException e) {
+                System.out.println("Error rolling over to " + lastDay + ": " + e.getMessage());
+            }
+        }
+        scheduleNextCheck();
+    }
+
+    private void scheduleNextCheck() {
+        ZoneId zone = clock.getZone();
+        Instant nextMidnight = LocalDate.now(clock).plusDays(1).atStartOfDay(zone).toInstant();
+        long untilMidnight = (long) (Duration.between(clock.instant(), nextMidnight).toMillis() / speed);
+        long delay = Math.max(1, Math.min(untilMidnight, recheckInterval.toMillis()));
+        timer.schedule(this::check, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs faster than the wrapped clock from the moment it is created; used for simulation.
+    static final class ScaledClock extends Clock {
+        private final Clock base;
+        private final double speed;
+        private final Instant origin;
+
+        ScaledClock(Clock base, double speed) {
+            this(base, speed, base.instant());
+        }
+
+        private ScaledClock(Clock base, double speed, Instant origin) {
+            this.base = base;
+            this.speed = speed;
+            this.origin = origin;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return base.getZone();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return new ScaledClock(base.withZone(zone), speed, origin);
+        }
+
+        @Override
+        public Instant instant() {
+            long elapsed = Duration.between(origin, base.instant()).toMillis();
+            return origin.plusMillis((long) (elapsed * speed));
+        }
+    }
+}
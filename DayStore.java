@@ -0,0 +1,233 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+// Fixed-width binary store of daily calorie totals, memory-mapped and indexed by epoch day.
+// Slot i holds the total for baseDay + i as a plain int, so opening the store is a single
+// mmap and every lookup is one offset computation. Days without a record hold EMPTY.
+// Reads and writes come from one thread; force() may also run on the journal's checkpoint
+// thread, so it and put(), which can remap the file, hold the store's lock.
+public class DayStore implements Closeable {
+    public static final int EMPTY = Integer.MIN_VALUE;
+
+    private static final int MAGIC = 0x43414C44; // "CALD"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int GROWTH_DAYS = 366;
+
+    // Header layout
+    private static final int OFF_MAGIC = 0;
+    private static final int OFF_VERSION = 4;
+    private static final int OFF_BASE = 8;
+    private static final int OFF_CAPACITY = 16;
+    private static final int OFF_FIRST = 24;
+    private static final int OFF_LAST = 32;
+    private static final int OFF_COUNT = 40;
+    private static final int OFF_FLAGS = 44;
+
+    private static final int FLAG_IMPORT_PENDING = 1; // Set at creation until finishImport()
+
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer map; // Replaced when the store grows; see the class comment
+    private long baseDay;
+    private int capacity;
+    private long firstDay;
+    private long lastDay;
+    private int count;
+    private int flags;
+    private final boolean created;
+
+    private DayStore(Path path) throws IOException {
+        IoGuard.checkNotOnEdt("open " + path);
+        this.path = path;
+        this.created = !Files.exists(path) || Files.size(path) < HEADER_SIZE;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (created) {
+            baseDay = 0; // 1970-01-01; ~1.5 KB per year of history
+            capacity = (int) LocalDate.now().toEpochDay() + GROWTH_DAYS;
+            firstDay = Long.MAX_VALUE;
+            lastDay = Long.MIN_VALUE;
+            flags = FLAG_IMPORT_PENDING;
+            map(capacity);
+            fillEmpty(0, capacity);
+            writeHeader();
+        } else {
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (map.getInt(OFF_MAGIC) != MAGIC || map.getInt(OFF_VERSION) != VERSION) {
+                throw new IOException("Not a calorie day-store: " + path);
+            }
+            baseDay = map.getLong(OFF_BASE);
+            capacity = (int) map.getLong(OFF_CAPACITY);
+            firstDay = map.getLong(OFF_FIRST);
+            lastDay = map.getLong(OFF_LAST);
+            count = map.getInt(OFF_COUNT);
+            flags = map.getInt(OFF_FLAGS); // Zero in stores written before the field existed
+            map(capacity);
+        }
+    }
+
+    public static DayStore open(Path path) throws IOException {
+        return new DayStore(path);
+    }
+
+    // True when the file did not exist before open().
+    public boolean isNew() {
+        return created;
+    }
+
+    // True from creation until finishImport(), so an import cut short by a crash is run
+    // again on the next open instead of leaving the store half-filled for good.
+    public boolean isImportPending() {
+        return (flags & FLAG_IMPORT_PENDING) != 0;
+    }
+
+    // Makes the imported days durable, then clears the pending flag and syncs it.
+    public synchronized void finishImport() {
+        force();
+        flags &= ~FLAG_IMPORT_PENDING;
+        map.putInt(OFF_FLAGS, flags);
+        force();
+    }
+
+    public int get(long epochDay) {
+        long slot = epochDay - baseDay;
+        if (slot < 0 || slot >= capacity) {
+            return EMPTY;
+        }
+        return map.getInt(HEADER_SIZE + (int) slot * 4);
+    }
+
+    public int get(LocalDate date) {
+        return get(date.toEpochDay());
+    }
+
+    public boolean containsKey(LocalDate date) {
+        return get(date.toEpochDay()) != EMPTY;
+    }
+
+    public void put(LocalDate date, int calories) {
+        put(date.toEpochDay(), calories);
+    }
+
+    public synchronized void put(long epochDay, int calories) {
+        ensureSlot(epochDay);
+        int offset = HEADER_SIZE + (int) (epochDay - baseDay) * 4;
+        if (map.getInt(offset) == EMPTY) {
+            count++;
+            map.putInt(OFF_COUNT, count);
+        }
+        map.putInt(offset, calories);
+        if (epochDay < firstDay) {
+            firstDay = epochDay;
+            map.putLong(OFF_FIRST, firstDay);
+        }
+        if (epochDay > lastDay) {
+            lastDay = epochDay;
+            map.putLong(OFF_LAST, lastDay);
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    // Only meaningful when the store is not empty.
+    public long firstDay() {
+        return firstDay;
+    }
+
+    public long lastDay() {
+        return lastDay;
+    }
+
+    // Copies dest.length slots starting at fromDay in one bulk transfer.
+    public void read(long fromDay, int[] dest) {
+        map.duplicate()
+           .position(HEADER_SIZE + (int) (fromDay - baseDay) * 4)
+           .asIntBuffer()
+           .get(dest);
+    }
+
+    // Visits every recorded day in date order.
+    public void forEach(DayConsumer consumer) {
+        if (count == 0) {
+            return;
+        }
+        for (long day = firstDay; day <= lastDay; day++) {
+            int calories = map.getInt(HEADER_SIZE + (int) (day - baseDay) * 4);
+            if (calories != EMPTY) {
+                consumer.accept(day, calories);
+            }
+        }
+    }
+
+    // Flushes dirty pages to disk; the journal calls this before discarding compacted records.
+    public synchronized void force() {
+        IoGuard.checkNotOnEdt("sync " + path);
+        map.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void ensureSlot(long epochDay) {
+        try {
+            if (epochDay < baseDay) {
+                throw new IllegalArgumentException("Date before " + LocalDate.ofEpochDay(baseDay) + " cannot be stored");
+            }
+            if (epochDay > lastStorableDay()) {
+                throw new IllegalArgumentException("Date after " + LocalDate.ofEpochDay(lastStorableDay()) + " cannot be stored");
+            }
+            if (epochDay - baseDay >= capacity) {
+                int needed = (int) (epochDay - baseDay) + 1;
+                int grown = Math.max(needed, capacity) + GROWTH_DAYS;
+                int oldCapacity = capacity;
+                map(grown);
+                fillEmpty(oldCapacity, grown);
+                capacity = grown;
+                writeHeader();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to grow day-store " + path, e);
+        }
+    }
+
+    // A year past today; a mistyped far-future date would otherwise grow the file to match.
+    static long lastStorableDay() {
+        return LocalDate.now().plusYears(1).toEpochDay();
+    }
+
+    private void map(int slots) throws IOException {
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * 4);
+    }
+
+    private void fillEmpty(int fromSlot, int toSlot) {
+        for (int i = fromSlot; i < toSlot; i++) {
+            map.putInt(HEADER_SIZE + i * 4, EMPTY);
+        }
+    }
+
+    private void writeHeader() {
+        map.putInt(OFF_MAGIC, MAGIC);
+        map.putInt(OFF_VERSION, VERSION);
+        map.putLong(OFF_BASE, baseDay);
+        map.putLong(OFF_CAPACITY, capacity);
+        map.putLong(OFF_FIRST, firstDay);
+        map.putLong(OFF_LAST, lastDay);
+        map.putInt(OFF_COUNT, count);
+        map.putInt(OFF_FLAGS, flags);
+    }
+}
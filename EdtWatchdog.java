@@ -0,0 +1,163 @@
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Event queue pushed in front of the system queue that times every event the Event
+// Dispatch Thread handles. All dispatch times go to the edt.dispatch histogram; one that
+// runs past the threshold (-Dcalorie.edtStallMillis, default 100) is a stall, counted
+// in edt.stalls and timed in edt.stall. A monitor thread looks at the dispatch in
+// progress a few times per threshold, so a stall's EDT stack is captured and logged
+// while the handler is still stuck, not after it returns. A modal dialog runs its own
+// event loop inside a dispatch; the time that loop spends waiting for or dispatching
+// other events is not charged to the outer event.
+// Run with -Dcalorie.edtWatchdog=false to leave the queue alone.
+public class EdtWatchdog extends EventQueue {
+    public static final String STALL_MILLIS_PROPERTY = "calorie.edtStallMillis";
+
+    private static final Metrics.Histogram DISPATCH_TIME = Metrics.histogram("edt.dispatch");
+    private static final Metrics.Histogram STALL_TIME = Metrics.histogram("edt.stall");
+    private static final Metrics.Counter STALLS = Metrics.counter("edt.stalls");
+    private static final int MAX_STACK_FRAMES = 40;
+
+    private final long thresholdNanos;
+    // Confined to the EDT: per nested dispatch, when its clock last started, the time
+    // already charged to it before an inner dispatch, and its event
+    private long[] starts = new long[8];
+    private long[] charged = new long[8];
+    private AWTEvent[] events = new AWTEvent[8];
+    private int depth;
+    // Read by the monitor: the dispatch in progress, or inFlightStart == 0 when idle.
+    // Written start and event first, then the sequence, so a reader that sees the same
+    // sequence before and after reading them has a consistent pair.
+    private volatile long inFlightStart;
+    private volatile long inFlightSeq;
+    private volatile AWTEvent inFlightEvent;
+    private volatile Thread edt;
+    private long reportedSeq; // Confined to the monitor
+
+    EdtWatchdog(long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    // Pushes a watchdog onto the system event queue and starts its monitor; does nothing
+    // when disabled by -Dcalorie.edtWatchdog=false.
+    public static void install() {
+        if (!Boolean.parseBoolean(System.getProperty("calorie.edtWatchdog", "true"))) {
+            return;
+        }
+        EdtWatchdog watchdog = new EdtWatchdog(Math.max(1, Long.getLong(STALL_MILLIS_PROPERTY, 100)));
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(watchdog);
+        Thread monitor = new Thread(watchdog::monitor, "edt-watchdog");
+        monitor.setDaemon(true);
+        monitor.start();
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        int level = depth++;
+        if (level == starts.length) {
+            starts = Arrays.copyOf(starts, level * 2);
+            charged = Arrays.copyOf(charged, level * 2);
+            events = Arrays.copyOf(events, level * 2);
+        }
+        long start = System.nanoTime();
+        if (level > 0) {
+            charged[level - 1] += start - starts[level - 1]; // The outer event's clock pauses
+        }
+        starts[level] = start;
+        charged[level] = 0;
+        events[level] = event;
+        edt = Thread.currentThread();
+        inFlight(start, event);
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            long end = System.nanoTime();
+            long elapsed = charged[level] + end - starts[level];
+            events[level] = null;
+            depth = level;
+            DISPATCH_TIME.record(elapsed);
+            if (elapsed >= thresholdNanos) {
+                STALLS.increment();
+                STALL_TIME.record(elapsed);
+                System.out.println("EDT stall: " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms in " + describe(event));
+            }
+            if (level > 0) {
+                starts[level - 1] = end; // Back in a modal loop; the outer event's clock resumes
+                inFlight(end, events[level - 1]);
+            } else {
+                inFlight(0, null);
+            }
+        }
+    }
+
+    // Inside a dispatch, only a modal loop asks for the next event; the outer event's clock
+    // pauses while it waits.
+    @Override
+    public AWTEvent getNextEvent() throws InterruptedException {
+        int level = depth;
+        if (level == 0) {
+            return super.getNextEvent();
+        }
+        charged[level - 1] += System.nanoTime() - starts[level - 1];
+        inFlight(0, null);
+        try {
+            return super.getNextEvent();
+        } finally {
+            starts[level - 1] = System.nanoTime();
+            inFlight(starts[level - 1], events[level - 1]);
+        }
+    }
+
+    private void inFlight(long start, AWTEvent event) {
+        inFlightStart = start;
+        inFlightEvent = event;
+        inFlightSeq++; // Only the EDT writes it
+    }
+
+    // Polls the dispatch in progress and logs the EDT stack once per stalled dispatch.
+    private void monitor() {
+        long pollMillis = Math.max(5, TimeUnit.NANOSECONDS.toMillis(thresholdNanos) / 4);
+        while (true) {
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long seq = inFlightSeq;
+            long start = inFlightStart;
+            AWTEvent event = inFlightEvent;
+            if (start == 0 || seq == reportedSeq || System.nanoTime() - start < thresholdNanos) {
+                continue;
+            }
+            Thread thread = edt;
+            StackTraceElement[] stack = thread != null ? thread.getStackTrace() : new StackTraceElement[0];
+            if (inFlightSeq != seq) {
+                continue; // The dispatch ended while the stack was taken; it is not the stalled one
+            }
+            reportedSeq = seq;
+            StringBuilder report = new StringBuilder("EDT stalled for ")
+                .append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .append(" ms in ").append(describe(event)).append(", stack:");
+            for (int i = 0; i < Math.min(stack.length, MAX_STACK_FRAMES); i++) {
+                report.append("\n    at ").append(stack[i]);
+            }
+            if (stack.length > MAX_STACK_FRAMES) {
+                report.append("\n    ... ").append(stack.length - MAX_STACK_FRAMES).append(" more");
+            }
+            System.out.println(report);
+        }
+    }
+
+    // The event type and its source class, without the source's full toString.
+    private static String describe(AWTEvent event) {
+        if (event == null) {
+            return "an event";
+        }
+        Object source = event.getSource();
+        return event.getClass().getSimpleName() + "[" + event.paramString() + "]"
+            + (source != null ? " on " + source.getClass().getName() : "");
+    }
+}
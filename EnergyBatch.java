@@ -0,0 +1,94 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// BMI and daily calorie needs (Mifflin-St Jeor BMR times the activity multiplier) over
+// whole cohorts held in primitive column arrays. The inner loop has no branches or
+// string switches: sex selects the BMR offset arithmetically and the activity multiplier
+// is a table lookup by code, so the JIT can unroll and auto-vectorize it. Large inputs
+// are split across cores with fork/join. Results match CalorieEngine.bmi and
+// CalorieEngine.dailyCalorieNeeds for the same person.
+public final class EnergyBatch {
+    // Activity codes are indexes into this array, in the order shown in the BMI form
+    public static final String[] ACTIVITY_LEVELS = {"Sedentary", "Light", "Moderate", "Active", "Very Active"};
+
+    private static final double[] MULTIPLIERS = {1.2, 1.375, 1.55, 1.725, 1.9};
+    private static final int SPLIT_THRESHOLD = 1 << 16; // Rows per fork/join leaf
+
+    private EnergyBatch() {
+    }
+
+    // Code for an activity level name; unknown names count as Sedentary, like CalorieEngine.
+    public static byte activityCode(String activityLevel) {
+        for (int i = 0; i < ACTIVITY_LEVELS.length; i++) {
+            if (ACTIVITY_LEVELS[i].equals(activityLevel)) {
+                return (byte) i;
+            }
+        }
+        return 0;
+    }
+
+    // Fills bmi[i] and tdee[i] for every row. male[i] is 1 for male and 0 for female;
+    // activity[i] is an activity code. All arrays must have the same length.
+    public static void compute(double[] heightCm, double[] weightKg, int[] age, byte[] male, byte[] activity,
+            double[] bmi, double[] tdee) {
+        int n = heightCm.length;
+        if (weightKg.length != n || age.length != n || male.length != n || activity.length != n
+                || bmi.length != n || tdee.length != n) {
+            throw new IllegalArgumentException("All columns must have " + n + " rows");
+        }
+        if (n <= SPLIT_THRESHOLD) {
+            computeRange(heightCm, weightKg, age, male, activity, bmi, tdee, 0, n);
+        } else {
+            ForkJoinPool.commonPool().invoke(new Chunk(heightCm, weightKg, age, male, activity, bmi, tdee, 0, n));
+        }
+    }
+
+    static void computeRange(double[] heightCm, double[] weightKg, int[] age, byte[] male, byte[] activity,
+            double[] bmi, double[] tdee, int from, int to) {
+        for (int i = from; i < to; i++) {
+            double h = heightCm[i];
+            double w = weightKg[i];
+            double meters = h * 0.01;
+            bmi[i] = w / (meters * meters);
+            // +5 for male, -161 for female
+            double bmr = 10 * w + 6.25 * h - 5 * age[i] - 161 + 166 * male[i];
+            tdee[i] = bmr * MULTIPLIERS[activity[i]];
+        }
+    }
+
+    private static final class Chunk extends RecursiveAction {
+        private final double[] heightCm;
+        private final double[] weightKg;
+        private final int[] age;
+        private final byte[] male;
+        private final byte[] activity;
+        private final double[] bmi;
+        private final double[] tdee;
+        private final int from;
+        private final int to;
+
+        Chunk(double[] heightCm, double[] weightKg, int[] age, byte[] male, byte[] activity,
+                double[] bmi, double[] tdee, int from, int to) {
+            this.heightCm = heightCm;
+            this.weightKg = weightKg;
+            this.age = age;
+            this.male = male;
+            this.activity = activity;
+            this.bmi = bmi;
+            this.tdee = tdee;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                computeRange(heightCm, weightKg, age, male, activity, bmi, tdee, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Chunk(heightCm, weightKg, age, male, activity, bmi, tdee, from, mid),
+                new Chunk(heightCm, weightKg, age, male, activity, bmi, tdee, mid, to));
+        }
+    }
+}
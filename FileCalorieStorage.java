@@ -0,0 +1,141 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// The default storage: the memory-mapped day-store and the columnar food entry store in the
+// profile directory, with every change written ahead to the journal.
+public class FileCalorieStorage implements CalorieStorage {
+    private final Path directory;
+    private DayStore dayStore;
+    private FoodEntryStore foodEntries;
+    private CalorieJournal journal;
+
+    public FileCalorieStorage(Path directory) {
+        this.directory = directory;
+    }
+
+    // Maps the day-store, imports the legacy CSV on first run (or after a crash cut that
+    // import short) and replays the journal.
+    @Override
+    public void open(LegacyImport legacyImport) throws IOException {
+        dayStore = DayStore.open(directory.resolve(CaloriePersistence.DAY_STORE));
+        foodEntries = FoodEntryStore.load(directory.resolve(CaloriePersistence.FOOD_STORE));
+        if (dayStore.isImportPending()) {
+            legacyImport.run(); // Again after a crash mid-import; importing a day twice is harmless
+            dayStore.finishImport();
+        }
+
+        // Runs on the journal's thread while writes go on; both stores lock against their writers
+        journal = new CalorieJournal(directory.resolve(CaloriePersistence.JOURNAL), () -> {
+            dayStore.force();
+            foodEntries.persist();
+        });
+        journal.replay(new CalorieJournal.ReplayHandler() {
+            @Override
+            public void onDayTotal(LocalDate date, int calories) {
+                dayStore.put(date, calories);
+            }
+
+            @Override
+            public void onFoodEntry(int seq, FoodEntry entry) {
+                foodEntries.addReplayed(seq, entry);
+            }
+        });
+    }
+
+    @Override
+    public CalorieSeries days() {
+        return CalorieSeries.copyOf(dayStore);
+    }
+
+    @Override
+    public void putDay(long epochDay, int calories) throws IOException {
+        dayStore.put(epochDay, calories);
+        journal.appendDayTotal(LocalDate.ofEpochDay(epochDay), calories);
+    }
+
+    @Override
+    public void addFoodEntry(FoodEntry entry) throws IOException {
+        int seq = foodEntries.add(entry);
+        journal.appendFoodEntry(seq, entry);
+    }
+
+    // Written straight to the day-store, not the journal; see finishImport.
+    @Override
+    public void importDay(long epochDay, int calories) {
+        dayStore.put(epochDay, calories);
+    }
+
+    // Compacts the journal, so older journal records for the imported days cannot
+    // overwrite them on the next load. A checkpoint already running only covers the
+    // records before it, so this waits for it and compacts again. Before the journal
+    // exists (the legacy import) there is nothing to compact.
+    @Override
+    public void finishImport() throws IOException {
+        if (journal != null) {
+            journal.compactAndWait();
+        }
+    }
+
+    @Override
+    public void flush() {
+        // The journal batches its own fsyncs
+    }
+
+    @Override
+    public List<FoodEntry> foodEntries(long fromMillis, long toMillis) {
+        int size = foodEntries.size();
+        List<FoodEntry> entries = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            FoodEntry entry = foodEntries.get(row);
+            if (entry.getTimestamp() >= fromMillis && entry.getTimestamp() < toMillis) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public Map<String, Long> caloriesByFood(long fromMillis, long toMillis) {
+        return foodEntries.caloriesByFood(fromMillis, toMillis);
+    }
+
+    @Override
+    public long firstFoodEntryMillis() {
+        return foodEntries.firstTimestamp();
+    }
+
+    @Override
+    public int[] dailyFoodCalories(long fromDay, long toDay) {
+        return foodEntries.dailyCalories(fromDay, toDay);
+    }
+
+    @Override
+    public int[] weeklyFoodCalories(long fromDay, int weeks) {
+        return foodEntries.weeklyCalories(fromDay, weeks);
+    }
+
+    @Override
+    public int[] monthlyFoodCalories(YearMonth from, int months) {
+        return foodEntries.monthlyCalories(from, months);
+    }
+
+    @Override
+    public FoodEntryStore.NutrientTotals nutrientTotals(long fromDay, long toDay) {
+        return foodEntries.totals(fromDay, toDay);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        if (dayStore != null) {
+            dayStore.close();
+        }
+    }
+}
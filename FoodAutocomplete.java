@@ -0,0 +1,143 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.swing.DefaultListModel;
+import javax.swing.JList;
+import javax.swing.JPopupMenu;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.border.LineBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+// Suggestion popup for a text field, fed from the food catalog on every keystroke.
+// Up/Down move through the suggestions, Enter or a click picks one, Escape closes.
+public class FoodAutocomplete {
+    private static final int MAX_SUGGESTIONS = 8;
+
+    private final JTextField field;
+    private final Supplier<FoodCatalog> catalog;
+    private final Consumer<FoodCatalog.Item> onPick;
+    private final DefaultListModel<FoodCatalog.Item> suggestions = new DefaultListModel<>();
+    private final JList<FoodCatalog.Item> list = new JList<>(suggestions);
+    private final JPopupMenu popup = new JPopupMenu();
+    private boolean picking;
+
+    public FoodAutocomplete(JTextField field, Supplier<FoodCatalog> catalog, Consumer<FoodCatalog.Item> onPick) {
+        this.field = field;
+        this.catalog = catalog;
+        this.onPick = onPick;
+
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        list.setFixedCellHeight(24);
+        list.setFocusable(false);
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                pick();
+            }
+        });
+
+        JScrollPane scrollPane = new JScrollPane(list);
+        scrollPane.setBorder(null);
+        popup.setBorder(new LineBorder(new Color(200, 200, 200), 1));
+        popup.setFocusable(false);
+        popup.add(scrollPane);
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                refresh();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                refresh();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                refresh();
+            }
+        });
+        field.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (!popup.isVisible()) {
+                    return;
+                }
+                int selected = list.getSelectedIndex();
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN -> list.setSelectedIndex(Math.min(selected + 1, suggestions.size() - 1));
+                    case KeyEvent.VK_UP -> list.setSelectedIndex(Math.max(selected - 1, 0));
+                    case KeyEvent.VK_ENTER -> pick();
+                    case KeyEvent.VK_ESCAPE -> popup.setVisible(false);
+                    default -> {
+                        return;
+                    }
+                }
+                list.ensureIndexIsVisible(list.getSelectedIndex());
+                e.consume();
+            }
+        });
+        field.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                popup.setVisible(false);
+            }
+        });
+    }
+
+    // Re-runs the current query, e.g. once the catalog has finished loading.
+    public void refresh() {
+        if (picking) {
+            return;
+        }
+        List<FoodCatalog.Item> matches = catalog.get().suggest(field.getText(), MAX_SUGGESTIONS);
+        suggestions.clear();
+        if (matches.isEmpty() || !field.isShowing()) {
+            popup.setVisible(false);
+            return;
+        }
+        matches.forEach(suggestions::addElement);
+        list.setSelectedIndex(0);
+        list.setVisibleRowCount(matches.size());
+        popup.setPopupSize(field.getWidth(), matches.size() * list.getFixedCellHeight() + 4);
+        if (popup.isVisible()) {
+            popup.pack();
+        } else {
+            // Deferred so the popup is shown after the document event has finished
+            SwingUtilities.invokeLater(() -> {
+                if (!suggestions.isEmpty() && field.hasFocus()) {
+                    popup.show(field, 0, field.getHeight());
+                }
+            });
+        }
+    }
+
+    private void pick() {
+        FoodCatalog.Item item = list.getSelectedValue();
+        popup.setVisible(false);
+        if (item == null) {
+            return;
+        }
+        picking = true;
+        try {
+            field.setText(item.name);
+        } finally {
+            picking = false;
+        }
+        onPick.accept(item);
+    }
+}
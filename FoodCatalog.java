@@ -0,0 +1,242 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Immutable nutrition catalog with a prefix index over normalized food names.
+// All normalized names live in one char[] separated by '\n'; the index is an int[] of
+// offsets where a word starts, sorted by the text that follows. A prefix query is one
+// binary search plus a short scan, so lookups stay in the microseconds at 500k items
+// and the index costs 4 bytes per word on top of the names themselves.
+public final class FoodCatalog {
+    public static final FoodCatalog EMPTY = new FoodCatalog(new ArrayList<>());
+
+    // One catalog item; nutrients are per serving, macros in grams.
+    public static final class Item {
+        public final String name;
+        public final int calories;
+        public final float protein;
+        public final float carbs;
+        public final float fat;
+        public final float servingGrams;
+
+        public Item(String name, int calories, float protein, float carbs, float fat, float servingGrams) {
+            this.name = name;
+            this.calories = calories;
+            this.protein = protein;
+            this.carbs = carbs;
+            this.fat = fat;
+            this.servingGrams = servingGrams;
+        }
+
+        @Override
+        public String toString() {
+            return name + " - " + calories + " kcal";
+        }
+    }
+
+    private final Item[] items;
+    private final char[] text;
+    private final int[] itemStarts;
+    private final int[] index;
+
+    private FoodCatalog(List<Item> itemList) {
+        items = itemList.toArray(new Item[0]);
+        itemStarts = new int[items.length];
+        StringBuilder sb = new StringBuilder(items.length * 16);
+        int words = 0;
+        for (int i = 0; i < items.length; i++) {
+            itemStarts[i] = sb.length();
+            String normalized = normalize(items[i].name);
+            sb.append(normalized).append('\n');
+            words += countWords(normalized);
+        }
+        text = new char[sb.length()];
+        sb.getChars(0, sb.length(), text, 0);
+
+        index = new int[words];
+        int w = 0;
+        for (int pos = 0; pos < text.length; pos++) {
+            if (text[pos] != '\n' && text[pos] != ' ' && (pos == 0 || text[pos - 1] == ' ' || text[pos - 1] == '\n')) {
+                index[w++] = pos;
+            }
+        }
+        sortIndex();
+    }
+
+    // Reads "name,calories[,protein,carbs,fat,serving_g]" rows; a header row and malformed rows are skipped.
+    public static FoodCatalog load(Path csv, String[][] builtIn) throws IOException {
+        IoGuard.checkNotOnEdt("load " + csv);
+        List<Item> list = new ArrayList<>();
+        for (String[] food : builtIn) {
+            list.add(new Item(food[0], Integer.parseInt(food[1]), 0f, 0f, 0f, 0f));
+        }
+        if (Files.exists(csv)) {
+            try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(",");
+                    if (parts.length < 2) {
+                        continue;
+                    }
+                    try {
+                        list.add(new Item(parts[0].trim(), Integer.parseInt(parts[1].trim()),
+                            parseOrZero(parts, 2), parseOrZero(parts, 3), parseOrZero(parts, 4), parseOrZero(parts, 5)));
+                    } catch (NumberFormatException ex) {
+                        // Header or malformed row
+                    }
+                }
+            }
+        }
+        return new FoodCatalog(list);
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    // Items with a word starting with the typed prefix, in index order, at most limit of them.
+    public List<Item> suggest(String prefix, int limit) {
+        List<Item> result = new ArrayList<>(limit);
+        String key = normalize(prefix);
+        if (key.isEmpty() || index.length == 0) {
+            return result;
+        }
+        for (int i = lowerBound(key); i < index.length && result.size() < limit && startsWith(index[i], key); i++) {
+            Item item = items[itemAt(index[i])];
+            // Multi-word names can match more than once; with small limits a linear check is cheapest
+            if (!result.contains(item)) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    // Lowercase, accents stripped, punctuation folded to spaces, whitespace collapsed.
+    static String normalize(String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        boolean space = true;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                sb.append(' ');
+                space = true;
+            }
+        }
+        int end = sb.length();
+        if (end > 0 && sb.charAt(end - 1) == ' ') {
+            sb.setLength(end - 1);
+        }
+        return sb.toString();
+    }
+
+    private static int countWords(String normalized) {
+        int count = 0;
+        for (int i = 0; i < normalized.length(); i++) {
+            if (normalized.charAt(i) != ' ' && (i == 0 || normalized.charAt(i - 1) == ' ')) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static float parseOrZero(String[] parts, int column) {
+        if (parts.length <= column || parts[column].isBlank()) {
+            return 0f;
+        }
+        return Float.parseFloat(parts[column].trim());
+    }
+
+    private int itemAt(int textOffset) {
+        int i = Arrays.binarySearch(itemStarts, textOffset);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    private int lowerBound(String key) {
+        int lo = 0;
+        int hi = index.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(index[mid], key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private boolean startsWith(int offset, String key) {
+        if (offset + key.length() > text.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (text[offset + i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Compares the text at offset (up to its '\n') with key.
+    private int compare(int offset, String key) {
+        for (int i = 0; i < key.length(); i++) {
+            char c = text[offset + i];
+            if (c == '\n') {
+                return -1;
+            }
+            if (c != key.charAt(i)) {
+                return c - key.charAt(i);
+            }
+        }
+        return text[offset + key.length()] == '\n' ? 0 : 1;
+    }
+
+    private int compare(int a, int b) {
+        while (true) {
+            char ca = text[a++];
+            char cb = text[b++];
+            if (ca != cb) {
+                return ca == '\n' ? -1 : cb == '\n' ? 1 : ca - cb;
+            }
+            if (ca == '\n') {
+                return 0;
+            }
+        }
+    }
+
+    // Bottom-up merge sort over the offsets; avoids boxing a million Integers.
+    private void sortIndex() {
+        int[] src = index;
+        int[] dst = new int[index.length];
+        for (int width = 1; width < src.length; width *= 2) {
+            for (int lo = 0; lo < src.length; lo += 2 * width) {
+                int mid = Math.min(lo + width, src.length);
+                int hi = Math.min(lo + 2 * width, src.length);
+                int i = lo;
+                int j = mid;
+                for (int k = lo; k < hi; k++) {
+                    dst[k] = (i < mid && (j >= hi || compare(src[i], src[j]) <= 0)) ? src[i++] : src[j++];
+                }
+            }
+            int[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+        if (src != index) {
+            System.arraycopy(src, 0, index, 0, index.length);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+// One logged food item. Immutable; the food log and its list model hold these
+// instead of pre-formatted strings. Macros are in grams and are zero when unknown,
+// as is the portion size.
+public final class FoodEntry {
+    private final long timestamp;
+    private final String name;
+    private final int calories;
+    private final float protein;
+    private final float carbs;
+    private final float fat;
+    private final float portionGrams;
+
+    public FoodEntry(long timestamp, String name, int calories) {
+        this(timestamp, name, calories, 0f, 0f, 0f, 0f);
+    }
+
+    public FoodEntry(long timestamp, String name, int calories, float protein, float carbs, float fat, float portionGrams) {
+        this.timestamp = timestamp;
+        this.name = name;
+        this.calories = calories;
+        this.protein = protein;
+        this.carbs = carbs;
+        this.fat = fat;
+        this.portionGrams = portionGrams;
+    }
+
+    // Epoch milliseconds when the entry was logged.
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCalories() {
+        return calories;
+    }
+
+    public float getProtein() {
+        return protein;
+    }
+
+    public float getCarbs() {
+        return carbs;
+    }
+
+    public float getFat() {
+        return fat;
+    }
+
+    public float getPortionGrams() {
+        return portionGrams;
+    }
+
+    @Override
+    public String toString() {
+        return name + " - " + calories + " kcal";
+    }
+}
@@ -0,0 +1,308 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Columnar store of every logged food entry.
+// Each field lives in its own primitive array and food names are interned into a
+// dictionary, so rollups are straight loops over int/float columns instead of string
+// parsing. Rows are append-only; a row's index is its sequence number in the journal.
+public class FoodEntryStore {
+    private static final int MAGIC = 0x43414C46; // "CALF"
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final Path path;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private int[] days = new int[INITIAL_CAPACITY];
+    private int[] calories = new int[INITIAL_CAPACITY];
+    private float[] protein = new float[INITIAL_CAPACITY];
+    private float[] carbs = new float[INITIAL_CAPACITY];
+    private float[] fat = new float[INITIAL_CAPACITY];
+    private float[] portions = new float[INITIAL_CAPACITY];
+    private int[] nameIds = new int[INITIAL_CAPACITY];
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIndex = new HashMap<>();
+    private int size;
+    private int persisted;
+
+    // Sums for one date range; macros are in grams.
+    public static final class NutrientTotals {
+        public final int entries;
+        public final long calories;
+        public final double protein;
+        public final double carbs;
+        public final double fat;
+
+        NutrientTotals(int entries, long calories, double protein, double carbs, double fat) {
+            this.entries = entries;
+            this.calories = calories;
+            this.protein = protein;
+            this.carbs = carbs;
+            this.fat = fat;
+        }
+    }
+
+    private FoodEntryStore(Path path) {
+        this.path = path;
+    }
+
+    // Loads every persisted row; a torn tail from an interrupted checkpoint is truncated,
+    // and the journal replays those rows again.
+    public static FoodEntryStore load(Path path) throws IOException {
+        IoGuard.checkNotOnEdt("load " + path);
+        FoodEntryStore store = new FoodEntryStore(path);
+        if (!Files.exists(path)) {
+            return store;
+        }
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (fc.size() < 4) {
+                fc.truncate(0); // Crashed before the header made it to disk
+                return store;
+            }
+            ByteBuffer data = ByteBuffer.allocate((int) fc.size());
+            while (data.hasRemaining() && fc.read(data) >= 0) {
+                // Read the whole file; rows are ~40 bytes so even years of entries are a few MB
+            }
+            data.flip();
+            if (data.getInt() != MAGIC) {
+                throw new IOException("Not a food entry store: " + path);
+            }
+            int lastGood = data.position();
+            while (data.remaining() >= 30) {
+                long timestamp = data.getLong();
+                int kcal = data.getInt();
+                float p = data.getFloat();
+                float c = data.getFloat();
+                float f = data.getFloat();
+                float portion = data.getFloat();
+                int nameLength = data.getShort() & 0xFFFF;
+                if (data.remaining() < nameLength) {
+                    break;
+                }
+                byte[] name = new byte[nameLength];
+                data.get(name);
+                store.append(new FoodEntry(timestamp, new String(name, StandardCharsets.UTF_8), kcal, p, c, f, portion));
+                lastGood = data.position();
+            }
+            if (lastGood < fc.size()) {
+                fc.truncate(lastGood);
+            }
+        }
+        store.persisted = store.size;
+        return store;
+    }
+
+    public synchronized int add(FoodEntry entry) {
+        append(entry);
+        return size - 1;
+    }
+
+    // Applies a journal record. Rows the last checkpoint already persisted are skipped.
+    public synchronized void addReplayed(int seq, FoodEntry entry) {
+        if (seq < size) {
+            return;
+        }
+        if (seq > size) {
+            System.out.println("Food entry journal has a gap at " + size + ", continuing from " + seq);
+        }
+        append(entry);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized FoodEntry get(int row) {
+        return new FoodEntry(timestamps[row], names.get(nameIds[row]), calories[row],
+            protein[row], carbs[row], fat[row], portions[row]);
+    }
+
+    // Appends the rows added since the last call to the store file and syncs it.
+    public void persist() throws IOException {
+        IoGuard.checkNotOnEdt("persist " + path);
+        boolean needsHeader = !Files.exists(path) || Files.size(path) == 0;
+        ByteBuffer out;
+        int upTo;
+        synchronized (this) {
+            upTo = size;
+            if (persisted == upTo) {
+                return;
+            }
+            out = ByteBuffer.allocate(4 + (upTo - persisted) * 64);
+            if (needsHeader) {
+                out.putInt(MAGIC);
+            }
+            for (int i = persisted; i < upTo; i++) {
+                byte[] name = names.get(nameIds[i]).getBytes(StandardCharsets.UTF_8);
+                if (out.remaining() < 30 + name.length) {
+                    out = ByteBuffer.allocate(out.capacity() * 2 + name.length).put(out.flip());
+                }
+                out.putLong(timestamps[i])
+                   .putInt(calories[i])
+                   .putFloat(protein[i])
+                   .putFloat(carbs[i])
+                   .putFloat(fat[i])
+                   .putFloat(portions[i])
+                   .putShort((short) name.length)
+                   .put(name);
+            }
+        }
+        out.flip();
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            while (out.hasRemaining()) {
+                fc.write(out);
+            }
+            fc.force(false);
+        }
+        synchronized (this) {
+            persisted = upTo;
+        }
+    }
+
+    // Calories per day for [fromDay, toDay]; index 0 is fromDay.
+    public synchronized int[] dailyCalories(long fromDay, long toDay) {
+        int[] totals = new int[(int) (toDay - fromDay) + 1];
+        for (int i = 0; i < size; i++) {
+            long slot = days[i] - fromDay;
+            if (slot >= 0 && slot < totals.length) {
+                totals[(int) slot] += calories[i];
+            }
+        }
+        return totals;
+    }
+
+    // Calories per 7-day week, starting at fromDay.
+    public int[] weeklyCalories(long fromDay, int weeks) {
+        return sumWeeks(dailyCalories(fromDay, fromDay + weeks * 7L - 1), weeks);
+    }
+
+    // Calories per calendar month, starting at the given month.
+    public int[] monthlyCalories(YearMonth from, int months) {
+        return sumMonths(dailyCalories(from.atDay(1).toEpochDay(), lastDayOf(from, months)), from, months);
+    }
+
+    // The weekly and monthly folds over a daily series, shared with JdbcCalorieStorage.
+    static int[] sumWeeks(int[] daily, int weeks) {
+        int[] totals = new int[weeks];
+        for (int i = 0; i < daily.length; i++) {
+            totals[i / 7] += daily[i];
+        }
+        return totals;
+    }
+
+    static long lastDayOf(YearMonth from, int months) {
+        return from.plusMonths(months - 1).atEndOfMonth().toEpochDay();
+    }
+
+    static int[] sumMonths(int[] daily, YearMonth from, int months) {
+        int[] totals = new int[months];
+        int offset = 0;
+        for (int m = 0; m < months; m++) {
+            int length = from.plusMonths(m).lengthOfMonth();
+            for (int d = 0; d < length; d++) {
+                totals[m] += daily[offset + d];
+            }
+            offset += length;
+        }
+        return totals;
+    }
+
+    // Calories and macros over [fromDay, toDay].
+    public synchronized NutrientTotals totals(long fromDay, long toDay) {
+        int entries = 0;
+        long kcal = 0;
+        double p = 0;
+        double c = 0;
+        double f = 0;
+        for (int i = 0; i < size; i++) {
+            if (days[i] >= fromDay && days[i] <= toDay) {
+                entries++;
+                kcal += calories[i];
+                p += protein[i];
+                c += carbs[i];
+                f += fat[i];
+            }
+        }
+        return new NutrientTotals(entries, kcal, p, c, f);
+    }
+
+    public NutrientTotals totals(LocalDate from, LocalDate to) {
+        return totals(from.toEpochDay(), to.toEpochDay());
+    }
+
+    // Total calories per food name for entries logged in [fromMillis, toMillis), largest
+    // first. One pass over the columns, summing into a slot per dictionary id.
+    public synchronized Map<String, Long> caloriesByFood(long fromMillis, long toMillis) {
+        long[] sums = new long[names.size()];
+        boolean[] logged = new boolean[names.size()];
+        for (int i = 0; i < size; i++) {
+            if (timestamps[i] >= fromMillis && timestamps[i] < toMillis) {
+                sums[nameIds[i]] += calories[i];
+                logged[nameIds[i]] = true;
+            }
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < sums.length; id++) {
+            if (logged[id]) {
+                ids.add(id);
+            }
+        }
+        ids.sort((a, b) -> Long.compare(sums[b], sums[a]));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int id : ids) {
+            result.put(names.get(id), sums[id]);
+        }
+        return result;
+    }
+
+    // The earliest timestamp, or Long.MAX_VALUE when empty. Rows are in log order, which a
+    // clock stepping back can make differ from time order, so every row is checked.
+    public synchronized long firstTimestamp() {
+        long first = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            first = Math.min(first, timestamps[i]);
+        }
+        return first;
+    }
+
+    private void append(FoodEntry entry) {
+        if (size == timestamps.length) {
+            int capacity = size * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            days = Arrays.copyOf(days, capacity);
+            calories = Arrays.copyOf(calories, capacity);
+            protein = Arrays.copyOf(protein, capacity);
+            carbs = Arrays.copyOf(carbs, capacity);
+            fat = Arrays.copyOf(fat, capacity);
+            portions = Arrays.copyOf(portions, capacity);
+            nameIds = Arrays.copyOf(nameIds, capacity);
+        }
+        timestamps[size] = entry.getTimestamp();
+        days[size] = (int) Instant.ofEpochMilli(entry.getTimestamp()).atZone(zone).toLocalDate().toEpochDay();
+        calories[size] = entry.getCalories();
+        protein[size] = entry.getProtein();
+        carbs[size] = entry.getCarbs();
+        fat[size] = entry.getFat();
+        portions[size] = entry.getPortionGrams();
+        nameIds[size] = nameIndex.computeIfAbsent(entry.getName(), n -> {
+            names.add(n);
+            return names.size() - 1;
+        });
+        size++;
+    }
+}
@@ -0,0 +1,48 @@
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.AbstractListModel;
+
+// List model behind today's food log. Appending fires a single-row insert, so the
+// JList only lays out and paints the rows that are actually visible.
+public class FoodLogModel extends AbstractListModel<FoodEntry> {
+    private final List<FoodEntry> entries = new ArrayList<>();
+
+    public void add(FoodEntry entry) {
+        entries.add(entry);
+        int row = entries.size() - 1;
+        fireIntervalAdded(this, row, row);
+    }
+
+    public void clear() {
+        int size = entries.size();
+        if (size == 0) {
+            return;
+        }
+        entries.clear();
+        fireIntervalRemoved(this, 0, size - 1);
+    }
+
+    // Brings the list in line with a state snapshot: entries are only ever appended until
+    // the log is cleared, so usually just the new tail is inserted.
+    public void sync(List<FoodEntry> latest) {
+        int size = entries.size();
+        if (latest.size() < size || (size > 0 && latest.get(size - 1) != entries.get(size - 1))) {
+            clear();
+            size = 0;
+        }
+        if (latest.size() > size) {
+            entries.addAll(latest.subList(size, latest.size()));
+            fireIntervalAdded(this, size, entries.size() - 1);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public FoodEntry getElementAt(int index) {
+        return entries.get(index);
+    }
+}
@@ -0,0 +1,25 @@
+import java.util.concurrent.atomic.LongAdder;
+
+// Guard called at the top of every disk I/O entry point. I/O attempted on the Event
+// Dispatch Thread is counted and rejected, so a regression fails loudly instead of
+// freezing the UI, and violations() gives a number to assert on.
+// The EDT is recognised by its thread name rather than through EventQueue, so headless
+// users of the storage classes never load AWT.
+public final class IoGuard {
+    private static final String EDT_NAME_PREFIX = "AWT-EventQueue-";
+    private static final LongAdder VIOLATIONS = new LongAdder();
+
+    private IoGuard() {
+    }
+
+    public static void checkNotOnEdt(String operation) {
+        if (Thread.currentThread().getName().startsWith(EDT_NAME_PREFIX)) {
+            VIOLATIONS.increment();
+            throw new IllegalStateException("Disk I/O on the Event Dispatch Thread: " + operation);
+        }
+    }
+
+    public static long violations() {
+        return VIOLATIONS.sum();
+    }
+}
@@ -0,0 +1,382 @@
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Keeps every profile in one SQL database, for example an embedded, file-local H2, SQLite
+// or Derby database: -Dcalorie.jdbcUrl=jdbc:h2:./calories with the driver jar on the
+// classpath. Only portable SQL is used. Writes are buffered and sent as prepared-statement
+// batches in one transaction when the I/O queue runs dry or BATCH_SIZE rows are waiting,
+// and connections come from a ConnectionPool shared by all profiles.
+//
+//   calorie_days   (profile, epoch_day) -> calories
+//   food_entries   (profile, seq) -> logged_at, food_name, calories, macros, grams
+//                  indexed on (profile, logged_at, food_name, calories), which covers
+//                  per-food totals over a time range, and on (profile, food_name, logged_at)
+public class JdbcCalorieStorage implements CalorieStorage {
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_NAME_LENGTH = 200;
+
+    private static final String[] SCHEMA = {
+        "CREATE TABLE calorie_days (profile VARCHAR(40) NOT NULL, epoch_day BIGINT NOT NULL,"
+            + " calories INTEGER NOT NULL, PRIMARY KEY (profile, epoch_day))",
+        "CREATE TABLE food_entries (profile VARCHAR(40) NOT NULL, seq INTEGER NOT NULL,"
+            + " logged_at BIGINT NOT NULL, food_name VARCHAR(" + MAX_NAME_LENGTH + ") NOT NULL,"
+            + " calories INTEGER NOT NULL, protein REAL NOT NULL, carbs REAL NOT NULL, fat REAL NOT NULL,"
+            + " grams REAL NOT NULL, PRIMARY KEY (profile, seq))",
+        "CREATE INDEX food_entries_time ON food_entries (profile, logged_at, food_name, calories)",
+        "CREATE INDEX food_entries_food ON food_entries (profile, food_name, logged_at)"
+    };
+
+    private final String url;
+    private final String profile;
+    private ConnectionPool pool;
+    private final Map<Long, Integer> pendingDays = new LinkedHashMap<>(); // Latest total per day
+    private final List<FoodEntry> pendingEntries = new ArrayList<>();
+    private int nextSeq;
+
+    public JdbcCalorieStorage(String url, String profile) {
+        this.url = url;
+        this.profile = profile;
+    }
+
+    @Override
+    public void open(LegacyImport legacyImport) throws IOException {
+        boolean empty;
+        try {
+            pool = ConnectionPool.acquire(url);
+            Connection c = pool.take();
+            try {
+                createSchemaIfMissing(c);
+                nextSeq = (int) queryLong(c, "SELECT COALESCE(MAX(seq) + 1, 0) FROM food_entries WHERE profile = ?");
+                empty = nextSeq == 0 && queryLong(c, "SELECT COUNT(*) FROM calorie_days WHERE profile = ?") == 0;
+            } finally {
+                pool.give(c);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Error opening " + url + ": " + e.getMessage(), e);
+        }
+        if (empty) {
+            legacyImport.run();
+            finishImport();
+        }
+    }
+
+    @Override
+    public CalorieSeries days() throws IOException {
+        flush();
+        CalorieSeries days = new CalorieSeries();
+        try {
+            Connection c = pool.take();
+            try (PreparedStatement select = c.prepareStatement(
+                    "SELECT epoch_day, calories FROM calorie_days WHERE profile = ?")) {
+                select.setString(1, profile);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        days.put(rs.getLong(1), rs.getInt(2));
+                    }
+                }
+            } finally {
+                pool.give(c);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Error reading daily totals: " + e.getMessage(), e);
+        }
+        return days;
+    }
+
+    @Override
+    public void putDay(long epochDay, int calories) throws IOException {
+        pendingDays.put(epochDay, calories);
+        if (pendingDays.size() >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    @Override
+    public void addFoodEntry(FoodEntry entry) throws IOException {
+        pendingEntries.add(entry);
+        if (pendingEntries.size() >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    // Buffered until finishImport, which writes the whole import in one transaction; a
+    // crash part way through leaves a new profile empty, so the legacy import runs again.
+    @Override
+    public void importDay(long epochDay, int calories) {
+        pendingDays.put(epochDay, calories);
+    }
+
+    @Override
+    public void finishImport() throws IOException {
+        flush();
+    }
+
+    // Writes the buffered rows in one transaction: days as delete + insert (a portable
+    // upsert), food entries as inserts.
+    @Override
+    public void flush() throws IOException {
+        if (pendingDays.isEmpty() && pendingEntries.isEmpty()) {
+            return;
+        }
+        try {
+            Connection c = pool.take();
+            try {
+                c.setAutoCommit(false);
+                if (!pendingDays.isEmpty()) {
+                    try (PreparedStatement delete = c.prepareStatement(
+                            "DELETE FROM calorie_days WHERE profile = ? AND epoch_day = ?");
+                         PreparedStatement insert = c.prepareStatement(
+                            "INSERT INTO calorie_days (profile, epoch_day, calories) VALUES (?, ?, ?)")) {
+                        for (Map.Entry<Long, Integer> day : pendingDays.entrySet()) {
+                            delete.setString(1, profile);
+                            delete.setLong(2, day.getKey());
+                            delete.addBatch();
+                            insert.setString(1, profile);
+                            insert.setLong(2, day.getKey());
+                            insert.setInt(3, day.getValue());
+                            insert.addBatch();
+                        }
+                        delete.executeBatch();
+                        insert.executeBatch();
+                    }
+                }
+                if (!pendingEntries.isEmpty()) {
+                    try (PreparedStatement insert = c.prepareStatement("INSERT INTO food_entries"
+                            + " (profile, seq, logged_at, food_name, calories, protein, carbs, fat, grams)"
+                            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                        int seq = nextSeq;
+                        for (FoodEntry entry : pendingEntries) {
+                            String name = entry.getName();
+                            insert.setString(1, profile);
+                            insert.setInt(2, seq++);
+                            insert.setLong(3, entry.getTimestamp());
+                            insert.setString(4, name.length() > MAX_NAME_LENGTH ? name.substring(0, MAX_NAME_LENGTH) : name);
+                            insert.setInt(5, entry.getCalories());
+                            insert.setFloat(6, entry.getProtein());
+                            insert.setFloat(7, entry.getCarbs());
+                            insert.setFloat(8, entry.getFat());
+                            insert.setFloat(9, entry.getPortionGrams());
+                            insert.addBatch();
+                        }
+                        insert.executeBatch();
+                    }
+                }
+                c.commit();
+                nextSeq += pendingEntries.size();
+                pendingDays.clear();
+                pendingEntries.clear();
+            } finally {
+                pool.give(c); // Rolls back if the commit was not reached
+            }
+        } catch (SQLException e) {
+            // The rows stay buffered, so the next flush retries them
+            throw new IOException("Error writing to " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<FoodEntry> foodEntries(long fromMillis, long toMillis) throws IOException {
+        flush();
+        List<FoodEntry> entries = new ArrayList<>();
+        try {
+            Connection c = pool.take();
+            try (PreparedStatement select = c.prepareStatement("SELECT logged_at, food_name, calories, protein, carbs,"
+                    + " fat, grams FROM food_entries WHERE profile = ? AND logged_at >= ? AND logged_at < ? ORDER BY seq")) {
+                select.setString(1, profile);
+                select.setLong(2, fromMillis);
+                select.setLong(3, toMillis);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        entries.add(new FoodEntry(rs.getLong(1), rs.getString(2), rs.getInt(3), rs.getFloat(4),
+                            rs.getFloat(5), rs.getFloat(6), rs.getFloat(7)));
+                    }
+                }
+            } finally {
+                pool.give(c);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Error reading food entries: " + e.getMessage(), e);
+        }
+        return entries;
+    }
+
+    @Override
+    public Map<String, Long> caloriesByFood(long fromMillis, long toMillis) throws IOException {
+        flush();
+        Map<String, Long> totals = new LinkedHashMap<>();
+        try {
+            Connection c = pool.take();
+            try (PreparedStatement select = c.prepareStatement("SELECT food_name, SUM(calories) FROM food_entries"
+                    + " WHERE profile = ? AND logged_at >= ? AND logged_at < ? GROUP BY food_name ORDER BY 2 DESC")) {
+                select.setString(1, profile);
+                select.setLong(2, fromMillis);
+                select.setLong(3, toMillis);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        totals.put(rs.getString(1), rs.getLong(2));
+                    }
+                }
+            } finally {
+                pool.give(c);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Error reading food totals: " + e.getMessage(), e);
+        }
+        return totals;
+    }
+
+    @Override
+    public long firstFoodEntryMillis() throws IOException {
+        flush();
+        try {
+            Connection c = pool.take();
+            try {
+                return queryLong(c, "SELECT COALESCE(MIN(logged_at), " + Long.MAX_VALUE + ") FROM food_entries WHERE profile = ?");
+            } finally {
+                pool.give(c);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Error reading the first food entry: " + e.getMessage(), e);
+        }
+    }
+
+    // Days are local days, as in FoodEntryStore; the entries are summed here rather than
+    // grouped in SQL, which has no portable way to turn logged_at into a local date.
+    @Override
+    public int[] dailyFoodCalories(long fromDay, long toDay) throws IOException {
+        flush();
+        ZoneId zone = ZoneId.systemDefault();
+        int[] totals = new int[(int) (toDay - fromDay) + 1];
+        try {
+            Connection c = pool.take();
+            try (PreparedStatement select = c.prepareStatement("SELECT logged_at, calories FROM food_entries"
+                    + " WHERE profile = ? AND logged_at >= ? AND logged_at < ?")) {
+                select.setString(1, profile);
+                select.setLong(2, startOfDay(fromDay, zone));
+                select.setLong(3, startOfDay(toDay + 1, zone));
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        long day = Instant.ofEpochMilli(rs.getLong(1)).atZone(zone).toLocalDate().toEpochDay();
+                        totals[(int) (day - fromDay)] += rs.getInt(2);
+                    }
+                }
+            } finally {
+                pool.give(c);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Error reading daily food calories: " + e.getMessage(), e);
+        }
+        return totals;
+    }
+
+    @Override
+    public int[] weeklyFoodCalories(long fromDay, int weeks) throws IOException {
+        return FoodEntryStore.sumWeeks(dailyFoodCalories(fromDay, fromDay + weeks * 7L - 1), weeks);
+    }
+
+    @Override
+    public int[] monthlyFoodCalories(YearMonth from, int months) throws IOException {
+        int[] daily = dailyFoodCalories(from.atDay(1).toEpochDay(), FoodEntryStore.lastDayOf(from, months));
+        return FoodEntryStore.sumMonths(daily, from, months);
+    }
+
+    @Override
+    public FoodEntryStore.NutrientTotals nutrientTotals(long fromDay, long toDay) throws IOException {
+        flush();
+        ZoneId zone = ZoneId.systemDefault();
+        try {
+            Connection c = pool.take();
+            try (PreparedStatement select = c.prepareStatement("SELECT COUNT(*), SUM(calories), SUM(protein),"
+                    + " SUM(carbs), SUM(fat) FROM food_entries WHERE profile = ? AND logged_at >= ? AND logged_at < ?")) {
+                select.setString(1, profile);
+                select.setLong(2, startOfDay(fromDay, zone));
+                select.setLong(3, startOfDay(toDay + 1, zone));
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+                    return new FoodEntryStore.NutrientTotals(rs.getInt(1), rs.getLong(2), rs.getDouble(3),
+                        rs.getDouble(4), rs.getDouble(5));
+                }
+            } finally {
+                pool.give(c);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Error reading nutrient totals: " + e.getMessage(), e);
+        }
+    }
+
+    private static long startOfDay(long epochDay, ZoneId zone) {
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (pool == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            pool.release();
+            pool = null;
+        }
+    }
+
+    private long queryLong(Connection c, String sql) throws SQLException {
+        try (PreparedStatement select = c.prepareStatement(sql)) {
+            select.setString(1, profile);
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    // Creates the tables and indexes unless they exist. Profiles in this JVM take turns;
+    // if another process creates the schema first, the failed DDL is rolled back and the
+    // tables it made are used.
+    private static synchronized void createSchemaIfMissing(Connection c) throws SQLException {
+        if (tableExists(c, "food_entries")) {
+            return;
+        }
+        c.setAutoCommit(false);
+        try (Statement ddl = c.createStatement()) {
+            for (String sql : SCHEMA) {
+                ddl.executeUpdate(sql);
+            }
+            c.commit();
+        } catch (SQLException e) {
+            c.rollback();
+            if (!tableExists(c, "food_entries")) {
+                throw e;
+            }
+        } finally {
+            c.setAutoCommit(true);
+        }
+    }
+
+    // Databases differ in the case they store unquoted names in, so both are checked.
+    private static boolean tableExists(Connection c, String table) throws SQLException {
+        DatabaseMetaData meta = c.getMetaData();
+        for (String name : new String[] {table, table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet rs = meta.getTables(null, null, name, null)) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,336 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+
+// Process-wide registry of counters, latency histograms and gauges for the hot paths
+// (record loading, export, rollover, chart building, EDT work). Recording is lock-free:
+// a counter is a LongAdder and a histogram a fixed array of log-linear buckets, so call
+// sites keep their metric in a static final field and pay a few atomic adds per event.
+// startExport() publishes everything as the JMX MBean calorie:type=Metrics and, with
+// -Dcalorie.metricsFile=<path>, rewrites a Prometheus text file every
+// -Dcalorie.metricsIntervalSeconds (default 10). CalorieHttpServer serves the same text
+// at /metrics. Nothing here touches AWT.
+public final class Metrics {
+    public static final String FILE_PROPERTY = "calorie.metricsFile";
+    static final String OBJECT_NAME = "calorie:type=Metrics";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final long MBEAN_DELAY_SECONDS = 5;
+
+    private static final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private static ScheduledExecutorService exporter;
+
+    private Metrics() {
+    }
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    // Latency histogram in nanoseconds, HDR-style: 16 linear sub-buckets per power of
+    // two, so any percentile is within 1/16 (about 6%) of the true value from 1 ns to
+    // centuries, in 960 fixed buckets.
+    public static final class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets.incrementAndGet(bucket(value));
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        // Records the time since startNanos, a System.nanoTime() taken before the work.
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long count() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        public long sumNanos() {
+            return sum.sum();
+        }
+
+        public long maxNanos() {
+            return max.get();
+        }
+
+        // The value below which the fraction q of the recordings fall (the top of that
+        // value's bucket, capped at the maximum), or 0 before the first recording.
+        public long percentileNanos(double q) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), maxNanos());
+                }
+            }
+            return maxNanos();
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+        }
+
+        // The largest value that falls into the bucket.
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lower + (1L << shift) - 1;
+        }
+    }
+
+    // The counter with this name, created on first use.
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    // Registers or replaces a gauge; the supplier is called on every read, from any thread.
+    public static void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public static Map<String, Counter> counters() {
+        return counters;
+    }
+
+    public static Map<String, Histogram> histograms() {
+        return histograms;
+    }
+
+    public static Map<String, LongSupplier> gauges() {
+        return gauges;
+    }
+
+    // Registers the MBean and starts the Prometheus file writer on a daemon thread. JMX is
+    // loaded a few seconds in, so it does not compete with startup. Later calls do nothing.
+    public static synchronized void startExport() {
+        if (exporter != null) {
+            return;
+        }
+        gauge("jvm.heap.used", () -> Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+        gauge("jvm.heap.max", () -> Runtime.getRuntime().maxMemory());
+        gauge("io.edt.violations", IoGuard::violations);
+        exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "calorie-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        exporter.schedule(Metrics::registerMBean, MBEAN_DELAY_SECONDS, TimeUnit.SECONDS);
+        String file = System.getProperty(FILE_PROPERTY);
+        if (file != null) {
+            Path target = Paths.get(file);
+            long interval = Math.max(1, Long.getLong("calorie.metricsIntervalSeconds", 10));
+            exporter.scheduleAtFixedRate(() -> {
+                try {
+                    writePrometheus(target);
+                } catch (IOException e) {
+                    System.out.println("Error writing metrics to " + target + ": " + e.getMessage());
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    // Writes every metric in the Prometheus text format, moved into place atomically so a
+    // scraper never reads a half-written file.
+    public static void writePrometheus(Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp)) {
+            writePrometheus(writer);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Counters as calorie_<name>_total, gauges as calorie_<name>, and histograms as
+    // summaries in seconds with the 0.5, 0.9 and 0.99 quantiles.
+    public static void writePrometheus(Writer out) throws IOException {
+        for (Map.Entry<String, Counter> c : counters.entrySet()) {
+            String name = prometheusName(c.getKey()) + "_total";
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(String.valueOf(c.getValue().get())).append('\n');
+        }
+        for (Map.Entry<String, LongSupplier> g : gauges.entrySet()) {
+            String name = prometheusName(g.getKey());
+            out.append("# TYPE ").append(name).append(" gauge\n");
+            out.append(name).append(' ').append(String.valueOf(g.getValue().getAsLong())).append('\n');
+        }
+        for (Map.Entry<String, Histogram> h : histograms.entrySet()) {
+            String name = prometheusName(h.getKey()) + "_seconds";
+            Histogram histogram = h.getValue();
+            out.append("# TYPE ").append(name).append(" summary\n");
+            for (double q : QUANTILES) {
+                out.append(name).append("{quantile=\"").append(String.valueOf(q)).append("\"} ")
+                   .append(seconds(histogram.percentileNanos(q))).append('\n');
+            }
+            out.append(name).append("_sum ").append(seconds(histogram.sumNanos())).append('\n');
+            out.append(name).append("_count ").append(String.valueOf(histogram.count())).append('\n');
+        }
+    }
+
+    private static String prometheusName(String name) {
+        return "calorie_" + name.replaceAll("[^A-Za-z0-9]", "_");
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.out.println("Error registering the metrics MBean: " + e.getMessage());
+        }
+    }
+
+    // Read-only view of the registry for JConsole and other JMX clients: one attribute per
+    // counter and gauge, and <name>.count / .p50Millis / .p99Millis / .maxMillis per histogram.
+    private static final class MetricsMBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Counter counter = counters.get(attribute);
+            if (counter != null) {
+                return counter.get();
+            }
+            LongSupplier gauge = gauges.get(attribute);
+            if (gauge != null) {
+                return gauge.getAsLong();
+            }
+            int dot = attribute.lastIndexOf('.');
+            Histogram histogram = dot > 0 ? histograms.get(attribute.substring(0, dot)) : null;
+            if (histogram != null) {
+                switch (attribute.substring(dot + 1)) {
+                    case "count":
+                        return histogram.count();
+                    case "p50Millis":
+                        return histogram.percentileNanos(0.5) / 1e6;
+                    case "p99Millis":
+                        return histogram.percentileNanos(0.99) / 1e6;
+                    case "maxMillis":
+                        return histogram.maxNanos() / 1e6;
+                    default:
+                        break;
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // Skipped, as the interface allows
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        // Built on every call, so metrics registered later still show up.
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String name : counters.keySet()) {
+                attributes.add(new MBeanAttributeInfo(name, "long", "Counter", true, false, false));
+            }
+            for (String name : gauges.keySet()) {
+                attributes.add(new MBeanAttributeInfo(name, "long", "Gauge", true, false, false));
+            }
+            for (String name : histograms.keySet()) {
+                attributes.add(new MBeanAttributeInfo(name + ".count", "long", "Recordings", true, false, false));
+                for (String stat : new String[] {"p50Millis", "p99Millis", "maxMillis"}) {
+                    attributes.add(new MBeanAttributeInfo(name + "." + stat, "double", "Latency", true, false, false));
+                }
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Calorie tracker metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
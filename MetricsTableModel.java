@@ -0,0 +1,69 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import javax.swing.table.AbstractTableModel;
+
+// Table model behind the diagnostics card: one row per histogram (count, p50, p99 and
+// max in milliseconds), then the counters and gauges (value only). refresh() re-reads the
+// registry; while the set of metrics is unchanged it only repaints the rows.
+public class MetricsTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"Metric", "Count / Value", "p50 (ms)", "p99 (ms)", "Max (ms)"};
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Object[]> rows = new ArrayList<>();
+
+    public void refresh() {
+        List<String> latestNames = new ArrayList<>();
+        List<Object[]> latestRows = new ArrayList<>();
+        for (Map.Entry<String, Metrics.Histogram> h : Metrics.histograms().entrySet()) {
+            Metrics.Histogram histogram = h.getValue();
+            latestNames.add(h.getKey());
+            latestRows.add(new Object[] {h.getKey(), histogram.count(), millis(histogram.percentileNanos(0.5)),
+                millis(histogram.percentileNanos(0.99)), millis(histogram.maxNanos())});
+        }
+        for (Map.Entry<String, Metrics.Counter> c : Metrics.counters().entrySet()) {
+            latestNames.add(c.getKey());
+            latestRows.add(new Object[] {c.getKey(), c.getValue().get(), "", "", ""});
+        }
+        for (Map.Entry<String, LongSupplier> g : Metrics.gauges().entrySet()) {
+            latestNames.add(g.getKey());
+            latestRows.add(new Object[] {g.getKey(), g.getValue().getAsLong(), "", "", ""});
+        }
+        boolean sameRows = latestNames.equals(names);
+        names.clear();
+        names.addAll(latestNames);
+        rows.clear();
+        rows.addAll(latestRows);
+        if (sameRows && !rows.isEmpty()) {
+            fireTableRowsUpdated(0, rows.size() - 1);
+        } else {
+            fireTableDataChanged();
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return rows.get(row)[column];
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
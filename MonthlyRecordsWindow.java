@@ -0,0 +1,254 @@
+import java.awt.BasicStroke;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Cursor;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.GridLayout;
+import java.time.LocalDate;
+import java.util.Arrays;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingConstants;
+import javax.swing.border.TitledBorder;
+import javax.swing.table.AbstractTableModel;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.ValueMarker;
+import org.jfree.data.category.DefaultCategoryDataset;
+
+// The "Monthly Records" window. It is built once on first open and then kept alive;
+// Dashboard pushes each changed day into it, so reopening costs nothing regardless
+// of how much history there is. All methods must be called on the EDT.
+public class MonthlyRecordsWindow extends JFrame {
+    private static final String EATEN_SERIES = "Calories Eaten";
+    private static final int[] STATS_RANGES = {7, 30, 365}; // Days, ending today
+    private static final Metrics.Histogram DATASET_TIME = Metrics.histogram("chart.dataset");
+
+    private final CalorieSeries records;
+    private final CalorieAggregates aggregates;
+    private final JLabel[] statsLabels = new JLabel[STATS_RANGES.length];
+    private DefaultCategoryDataset dataset;
+    private final RecordsTableModel tableModel = new RecordsTableModel();
+    private final ValueMarker goalMarker;
+    private final CategoryPlot plot;
+
+    public MonthlyRecordsWindow(CalorieSeries records, double calorieGoal, Runnable exportAction, Runnable importAction) {
+        super("Monthly Records");
+        this.records = records;
+        setSize(900, 600);
+        setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
+        setLayout(new BorderLayout());
+        getContentPane().setBackground(new Color(245, 245, 250));
+
+        JLabel titleLabel = new JLabel("Calorie Records for the Month", SwingConstants.CENTER);
+        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
+        titleLabel.setForeground(new Color(48, 35, 174));
+        titleLabel.setBorder(BorderFactory.createEmptyBorder(20, 10, 10, 10));
+
+        // Rolling statistics, answered from the aggregate tree instead of scanning every day
+        aggregates = new CalorieAggregates(records, calorieGoal);
+        JPanel statsPanel = new JPanel(new GridLayout(1, STATS_RANGES.length, 20, 0));
+        statsPanel.setBackground(new Color(245, 245, 250));
+        statsPanel.setBorder(BorderFactory.createEmptyBorder(0, 20, 0, 20));
+        for (int i = 0; i < STATS_RANGES.length; i++) {
+            statsLabels[i] = new JLabel("", SwingConstants.CENTER);
+            statsLabels[i].setFont(new Font("Segoe UI", Font.PLAIN, 13));
+            statsPanel.add(statsLabels[i]);
+        }
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.setBackground(new Color(245, 245, 250));
+        headerPanel.add(titleLabel, BorderLayout.NORTH);
+        headerPanel.add(statsPanel, BorderLayout.CENTER);
+        add(headerPanel, BorderLayout.NORTH);
+        updateStats();
+
+        JPanel contentPanel = new JPanel(new GridLayout(1, 2, 20, 0)); // Split into two columns
+        contentPanel.setBackground(new Color(245, 245, 250));
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        // Left panel for the records table; JTable only renders the visible rows
+        records.forEach((epochDay, calories) -> tableModel.append(epochDay));
+        dataset = buildDataset(records);
+
+        JTable recordsTable = new JTable(tableModel);
+        recordsTable.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        recordsTable.setForeground(new Color(60, 60, 60));
+        recordsTable.setRowHeight(22);
+        recordsTable.setFillsViewportHeight(true);
+        JScrollPane scrollPane = new JScrollPane(recordsTable);
+        scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
+        scrollPane.setBorder(BorderFactory.createTitledBorder(
+            BorderFactory.createLineBorder(new Color(200, 200, 200), 1),
+            "Records",
+            TitledBorder.LEFT,
+            TitledBorder.TOP,
+            new Font("Segoe UI", Font.BOLD, 14),
+            new Color(48, 35, 174)
+        ));
+
+        // Right panel for the graph; the goal is a single marker rather than one point per day
+        JFreeChart lineChart = ChartFactory.createLineChart(
+            "Calorie Progress",
+            "Day",
+            "Calories",
+            dataset
+        );
+        goalMarker = new ValueMarker(calorieGoal);
+        goalMarker.setPaint(new Color(83, 51, 237));
+        goalMarker.setStroke(new BasicStroke(2f));
+        goalMarker.setLabel("Calorie Goal");
+        plot = lineChart.getCategoryPlot();
+        plot.addRangeMarker(goalMarker);
+        ChartPanel chartPanel = new ChartPanel(lineChart);
+        chartPanel.setPreferredSize(new Dimension(400, 400));
+
+        // Add components to the content panel
+        contentPanel.add(scrollPane); // Left: Records table
+        contentPanel.add(chartPanel); // Right: Graph
+
+        add(contentPanel, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.setBackground(new Color(245, 245, 250));
+        buttonPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JButton exportButton = new JButton("Export to CSV");
+        exportButton.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        exportButton.setBackground(new Color(83, 51, 237));
+        exportButton.setForeground(Color.WHITE);
+        exportButton.setFocusPainted(false);
+        exportButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        exportButton.addActionListener(e -> exportAction.run());
+        buttonPanel.add(exportButton);
+
+        JButton importButton = new JButton("Import CSV...");
+        importButton.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        importButton.setBackground(new Color(83, 51, 237));
+        importButton.setForeground(Color.WHITE);
+        importButton.setFocusPainted(false);
+        importButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        importButton.addActionListener(e -> importAction.run());
+        buttonPanel.add(importButton);
+
+        JButton closeButton = new JButton("Close");
+        closeButton.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        closeButton.setBackground(new Color(200, 200, 200));
+        closeButton.setForeground(Color.BLACK);
+        closeButton.setFocusPainted(false);
+        closeButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        closeButton.addActionListener(e -> setVisible(false));
+        buttonPanel.add(closeButton);
+
+        add(buttonPanel, BorderLayout.SOUTH);
+    }
+
+    // Applies one changed day. Days after the last one (the normal case) are appended;
+    // a backdated day is inserted into the table and forces a one-off chart rebuild,
+    // since category order in the dataset is insertion order.
+    public void updateDay(LocalDate date, int calories) {
+        aggregates.update(date, calories);
+        updateStats();
+        long epochDay = date.toEpochDay();
+        String category = date.toString();
+        int row = tableModel.indexOf(epochDay);
+        if (row >= 0) {
+            tableModel.fireTableRowsUpdated(row, row);
+            dataset.setValue(calories, EATEN_SERIES, category);
+        } else if (tableModel.isAfterLast(epochDay)) {
+            tableModel.append(epochDay);
+            dataset.addValue(calories, EATEN_SERIES, category);
+        } else {
+            tableModel.insert(-row - 1, epochDay);
+            rebuildDataset();
+        }
+    }
+
+    public void setGoal(double calorieGoal) {
+        goalMarker.setValue(calorieGoal);
+        aggregates.setGoal(calorieGoal);
+        updateStats();
+    }
+
+    private void updateStats() {
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < STATS_RANGES.length; i++) {
+            CalorieAggregates.Stats stats = aggregates.query(today.minusDays(STATS_RANGES[i] - 1), today);
+            statsLabels[i].setText(String.format("<html><center><b>Last %d days</b><br>"
+                + "avg %,.0f kcal, %,d\u2013%,d<br>%d of %d days over goal</center></html>",
+                STATS_RANGES[i], stats.mean(), stats.min, stats.max, stats.daysOverGoal, stats.days));
+        }
+    }
+
+    // Filled off-plot and swapped in, so the chart redraws once rather than once per day.
+    private void rebuildDataset() {
+        dataset = buildDataset(records);
+        plot.setDataset(dataset);
+    }
+
+    // One category per recorded day, in date order. Needs no display, so it is benchmarked headless.
+    static DefaultCategoryDataset buildDataset(CalorieSeries records) {
+        long start = System.nanoTime();
+        DefaultCategoryDataset built = new DefaultCategoryDataset();
+        records.forEach((epochDay, calories) ->
+            built.addValue(calories, EATEN_SERIES, LocalDate.ofEpochDay(epochDay).toString()));
+        DATASET_TIME.recordSince(start);
+        return built;
+    }
+
+    // Rows are the recorded days in date order; values are read straight from the series.
+    private class RecordsTableModel extends AbstractTableModel {
+        private long[] days = new long[64];
+        private int size;
+
+        int indexOf(long epochDay) {
+            return Arrays.binarySearch(days, 0, size, epochDay);
+        }
+
+        boolean isAfterLast(long epochDay) {
+            return size == 0 || epochDay > days[size - 1];
+        }
+
+        void append(long epochDay) {
+            insert(size, epochDay);
+        }
+
+        void insert(int row, long epochDay) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+            }
+            System.arraycopy(days, row, days, row + 1, size - row);
+            days[row] = epochDay;
+            size++;
+            fireTableRowsInserted(row, row);
+        }
+
+        @Override
+        public int getRowCount() {
+            return size;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 2;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return column == 0 ? "Day" : "Total Calories";
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            long epochDay = days[row];
+            return column == 0 ? LocalDate.ofEpochDay(epochDay).toString() : records.get(epochDay);
+        }
+    }
+}
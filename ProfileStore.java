@@ -0,0 +1,230 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Many user profiles in one JVM. Each profile is a shard: its own directory holding its
+// day-store, food entry store and journal, served by its own CalorieEngine. Engines are
+// opened on first use and kept in an access-ordered LRU; once more than maxResident are
+// open, the least recently used one is flushed and closed in the background. Pinned
+// profiles (the one the window shows) are never evicted, so their engines stay usable.
+// The "default" profile lives in the root directory, so existing single-user data keeps
+// working; every other profile lives in profiles/<name>/.
+public class ProfileStore implements Closeable {
+    public static final String DEFAULT_PROFILE = "default";
+    static final String PROFILES_DIR = "profiles";
+
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9_-]{1,40}");
+
+    private final Path root;
+    private final int maxResident;
+    private final double calorieGoal;
+    private final Clock clock;
+    private final Function<String, CalorieStateModel.Listener> listeners;
+    private final LinkedHashMap<String, CalorieEngine> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Void>> closing = new HashMap<>();
+    private final Map<String, CompletableFuture<CalorieEngine>> reopening = new HashMap<>();
+    private final Map<String, Integer> pins = new HashMap<>(); // Pin count per profile
+
+    // listeners is called once per opened engine, with the profile name.
+    public ProfileStore(Path root, int maxResident, double calorieGoal, Clock clock,
+            Function<String, CalorieStateModel.Listener> listeners) {
+        this.root = root;
+        this.maxResident = Math.max(1, maxResident);
+        this.calorieGoal = calorieGoal;
+        this.clock = clock;
+        this.listeners = listeners;
+    }
+
+    public static boolean isValidName(String name) {
+        return VALID_NAME.matcher(name).matches();
+    }
+
+    // The default profile followed by every profile directory, sorted by name. Reads the disk.
+    public List<String> profiles() throws IOException {
+        IoGuard.checkNotOnEdt("list " + root.resolve(PROFILES_DIR));
+        List<String> names = new ArrayList<>();
+        names.add(DEFAULT_PROFILE);
+        Path dir = root.resolve(PROFILES_DIR);
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> dirs = Files.list(dir)) {
+                dirs.filter(Files::isDirectory)
+                    .map(p -> p.getFileName().toString())
+                    .filter(ProfileStore::isValidName)
+                    .filter(n -> !n.equals(DEFAULT_PROFILE))
+                    .sorted()
+                    .forEach(names::add);
+            }
+        }
+        return names;
+    }
+
+    // Whether the profile has been created: it is the default one, it is open, or its
+    // directory is on disk. Reads the disk unless the profile is open.
+    public boolean exists(String name) {
+        if (!isValidName(name)) {
+            return false;
+        }
+        synchronized (this) {
+            if (name.equals(DEFAULT_PROFILE) || resident.containsKey(name) || reopening.containsKey(name)) {
+                return true;
+            }
+        }
+        IoGuard.checkNotOnEdt("check " + directoryOf(name));
+        return Files.isDirectory(directoryOf(name));
+    }
+
+    // Creates the profile's directory, so exists() sees it from now on, and opens it.
+    public CompletableFuture<CalorieEngine> create(String name) throws IOException {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Invalid profile name: " + name);
+        }
+        IoGuard.checkNotOnEdt("create " + directoryOf(name));
+        Files.createDirectories(directoryOf(name));
+        return get(name);
+    }
+
+    // The profile's engine, opening it (and starting its load) if it is not resident.
+    // Commands sent to a fresh engine queue up behind its load, so it can be used at once.
+    // The future is already complete unless the profile was evicted moments ago; then it
+    // completes on the closing thread once the old engine has closed its files.
+    public synchronized CompletableFuture<CalorieEngine> get(String name) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Invalid profile name: " + name);
+        }
+        CalorieEngine engine = resident.get(name);
+        if (engine != null) {
+            return CompletableFuture.completedFuture(engine);
+        }
+        CompletableFuture<CalorieEngine> waiting = reopening.get(name);
+        if (waiting != null) {
+            return waiting;
+        }
+        CompletableFuture<Void> pendingClose = closing.get(name);
+        if (pendingClose == null) {
+            return CompletableFuture.completedFuture(open(name));
+        }
+        CompletableFuture<CalorieEngine> reopened = new CompletableFuture<>();
+        reopening.put(name, reopened);
+        pendingClose.whenComplete((ignored, closeError) -> {
+            CalorieEngine opened;
+            try {
+                synchronized (this) {
+                    reopening.remove(name);
+                    opened = open(name);
+                }
+            } catch (RuntimeException e) {
+                reopened.completeExceptionally(e);
+                return;
+            }
+            reopened.complete(opened); // Outside the lock; callers' stages may run here
+        });
+        return reopened;
+    }
+
+    // Like get, but the profile stays resident until every pin is released with unpin, so
+    // a caller can hold on to its engine while other profiles come and go.
+    public synchronized CompletableFuture<CalorieEngine> pin(String name) {
+        CompletableFuture<CalorieEngine> engine = get(name);
+        pins.merge(name, 1, Integer::sum);
+        return engine;
+    }
+
+    // Releases one pin; once the last is gone the profile can be evicted again.
+    public synchronized void unpin(String name) {
+        Integer count = pins.get(name);
+        if (count == null) {
+            throw new IllegalStateException("Profile " + name + " is not pinned");
+        }
+        if (count == 1) {
+            pins.remove(name);
+            evictOverBudget(null);
+        } else {
+            pins.put(name, count - 1);
+        }
+    }
+
+    private CalorieEngine open(String name) {
+        CalorieEngine engine = new CalorieEngine(directoryOf(name), name, calorieGoal, clock);
+        engine.addListener(listeners.apply(name));
+        engine.load().whenComplete((ignored, error) -> {
+            if (error != null) {
+                System.out.println("Error loading profile " + name + ": " + error.getMessage());
+            }
+        });
+        resident.put(name, engine);
+        evictOverBudget(name);
+        return engine;
+    }
+
+    public synchronized int residentCount() {
+        return resident.size();
+    }
+
+    // Rolls every open profile over; closed ones start on the current day when reopened.
+    public synchronized void rollover(LocalDate newDay) {
+        for (CalorieEngine engine : resident.values()) {
+            engine.rollover(newDay);
+        }
+    }
+
+    // Closes every engine, including ones still waiting to reopen.
+    @Override
+    public void close() {
+        List<CalorieEngine> engines;
+        List<CompletableFuture<Void>> pending;
+        List<CompletableFuture<CalorieEngine>> reopens;
+        synchronized (this) {
+            engines = new ArrayList<>(resident.values());
+            resident.clear();
+            pending = new ArrayList<>(closing.values());
+            reopens = new ArrayList<>(reopening.values());
+        }
+        engines.forEach(CalorieEngine::close);
+        pending.forEach(CompletableFuture::join);
+        for (CompletableFuture<CalorieEngine> reopened : reopens) {
+            CalorieEngine engine = reopened.join();
+            synchronized (this) {
+                resident.values().remove(engine);
+            }
+            engine.close();
+        }
+    }
+
+    Path directoryOf(String name) {
+        return name.equals(DEFAULT_PROFILE) ? root : root.resolve(PROFILES_DIR).resolve(name);
+    }
+
+    private void evictOverBudget(String keep) {
+        Iterator<Map.Entry<String, CalorieEngine>> it = resident.entrySet().iterator();
+        while (resident.size() > maxResident && it.hasNext()) {
+            Map.Entry<String, CalorieEngine> eldest = it.next();
+            if (eldest.getKey().equals(keep) || pins.containsKey(eldest.getKey())) {
+                continue;
+            }
+            it.remove();
+            String name = eldest.getKey();
+            CalorieEngine engine = eldest.getValue();
+            // Closing drains queued writes and syncs, so keep it off the caller's thread
+            CompletableFuture<Void> done = CompletableFuture.runAsync(engine::close);
+            closing.put(name, done);
+            done.whenComplete((ignored, error) -> {
+                synchronized (this) {
+                    closing.remove(name, done);
+                }
+            });
+        }
+    }
+}
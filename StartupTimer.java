@@ -0,0 +1,57 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Wall-clock timings of the startup phases, measured from JVM start so class loading and
+// JIT warm-up before main are included. Run with -Dcalorie.startupReport=true to print
+// the report once startup finishes, e.g. to track time-to-first-frame between releases.
+public final class StartupTimer {
+    public static final String REPORT_PROPERTY = "calorie.startupReport";
+
+    private static final long START_NANOS = System.nanoTime();
+    // Time already spent in the JVM when this class was loaded; falls back to 0 if unknown
+    private static final long JVM_OFFSET_MILLIS = ProcessHandle.current().info().startInstant()
+        .map(start -> Math.max(0, System.currentTimeMillis() - start.toEpochMilli()))
+        .orElse(0L);
+
+    private static final List<String> phases = new ArrayList<>();
+    private static final List<Long> times = new ArrayList<>();
+    private static boolean finished;
+
+    private StartupTimer() {
+    }
+
+    // Milliseconds since JVM start.
+    public static long elapsedMillis() {
+        return JVM_OFFSET_MILLIS + (System.nanoTime() - START_NANOS) / 1_000_000;
+    }
+
+    public static synchronized void mark(String phase) {
+        if (!finished) {
+            phases.add(phase);
+            times.add(elapsedMillis());
+        }
+    }
+
+    // Records the last phase and prints the report; later calls are ignored.
+    public static synchronized void finish(String phase) {
+        if (finished) {
+            return;
+        }
+        mark(phase);
+        finished = true;
+        if (Boolean.getBoolean(REPORT_PROPERTY)) {
+            System.out.println(report());
+        }
+    }
+
+    public static synchronized String report() {
+        StringBuilder out = new StringBuilder("Startup timings (ms since JVM start):");
+        long previous = 0;
+        for (int i = 0; i < phases.size(); i++) {
+            long time = times.get(i);
+            out.append(String.format("%n  %-20s %6d  (+%d)", phases.get(i), time, time - previous));
+            previous = time;
+        }
+        return out.toString();
+    }
+}
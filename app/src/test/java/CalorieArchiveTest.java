@@ -0,0 +1,143 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CalorieArchiveTest {
+    private static final long FIRST_DAY = LocalDate.of(1995, 1, 1).toEpochDay();
+    private static final int DAYS = 10_000; // Three day blocks of up to 4096
+    private static final int ENTRIES = 9_000; // Three food entry blocks
+    private static final long FIRST_MILLIS = FIRST_DAY * 86_400_000L;
+    private static final long ENTRY_STEP = 3_600_000L;
+    private static final String[] FOODS = {"Apple", "Oats", "Rice", "Soup", "Cake"};
+
+    @TempDir
+    Path dir;
+
+    private static CalorieSeries days() {
+        Random random = new Random(42);
+        CalorieSeries days = new CalorieSeries();
+        for (int i = 0; i < DAYS; i++) {
+            if (random.nextInt(10) != 0) { // Gaps, so day deltas are not all 1
+                days.put(FIRST_DAY + i, random.nextInt(4000));
+            }
+        }
+        return days;
+    }
+
+    private static List<FoodEntry> entries() {
+        Random random = new Random(7);
+        List<FoodEntry> entries = new ArrayList<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            long at = FIRST_MILLIS + i * ENTRY_STEP - (i == 5000 ? 2 * ENTRY_STEP : 0); // One clock step back
+            entries.add(new FoodEntry(at, FOODS[random.nextInt(FOODS.length)], random.nextInt(900),
+                random.nextInt(40), random.nextInt(100), random.nextInt(30), 50 + random.nextInt(300)));
+        }
+        return entries;
+    }
+
+    private static void assertSameEntry(FoodEntry expected, FoodEntry actual) {
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getCalories(), actual.getCalories());
+        assertEquals(expected.getProtein(), actual.getProtein());
+        assertEquals(expected.getCarbs(), actual.getCarbs());
+        assertEquals(expected.getFat(), actual.getFat());
+        assertEquals(expected.getPortionGrams(), actual.getPortionGrams());
+    }
+
+    @Test
+    void roundTripsDaysAndFoodEntries() throws Exception {
+        CalorieSeries days = days();
+        List<FoodEntry> entries = entries();
+        Path path = dir.resolve("all.cala");
+        CalorieArchive.write(path, days, entries);
+
+        CalorieArchive archive = CalorieArchive.open(path);
+        assertEquals(6, archive.blockCount());
+        CalorieSeries read = new CalorieSeries();
+        archive.scanDays(Long.MIN_VALUE, Long.MAX_VALUE, read::put);
+        assertEquals(days.size(), read.size());
+        days.forEach((day, calories) -> assertEquals(calories, read.get(day), "day " + day));
+
+        List<FoodEntry> readEntries = new ArrayList<>();
+        archive.scanFoodEntries(Long.MIN_VALUE, Long.MAX_VALUE, readEntries::add);
+        assertEquals(entries.size(), readEntries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertSameEntry(entries.get(i), readEntries.get(i));
+        }
+    }
+
+    // A narrow range inflates only the block holding it; the index rules out the rest.
+    @Test
+    void rangeScanInflatesOnlyOverlappingBlocks() throws Exception {
+        CalorieSeries days = days();
+        List<FoodEntry> entries = entries();
+        Path path = dir.resolve("range.cala");
+        CalorieArchive.write(path, days, entries);
+        CalorieArchive archive = CalorieArchive.open(path);
+
+        long from = FIRST_DAY + 5_000;
+        long to = from + 29;
+        CalorieSeries read = new CalorieSeries();
+        archive.scanDays(from, to, read::put);
+        assertEquals(1, archive.blocksInflated());
+        CalorieSeries expected = new CalorieSeries();
+        days.forEachInRange(from, to, expected::put);
+        assertEquals(expected.size(), read.size());
+        expected.forEach((day, calories) -> assertEquals(calories, read.get(day), "day " + day));
+
+        List<FoodEntry> window = new ArrayList<>();
+        long fromMillis = FIRST_MILLIS + 7_000 * ENTRY_STEP;
+        archive.scanFoodEntries(fromMillis, fromMillis + 9 * ENTRY_STEP, window::add);
+        assertEquals(2, archive.blocksInflated());
+        assertEquals(10, window.size());
+        for (int i = 0; i < window.size(); i++) {
+            assertSameEntry(entries.get(7_000 + i), window.get(i));
+        }
+
+        archive.scanDays(FIRST_DAY - 100, FIRST_DAY - 1, read::put); // Before every block
+        assertEquals(2, archive.blocksInflated());
+    }
+
+    // An archive in the profile directory fills in the history before the live records.
+    @Test
+    void engineServesArchivedHistory() throws Exception {
+        LocalDate today = LocalDate.now();
+        CalorieSeries old = new CalorieSeries();
+        for (int i = 1; i <= 60; i++) {
+            old.put(today.minusDays(i).toEpochDay(), 1000 + i);
+        }
+        old.put(today.toEpochDay(), 5000); // Overlaps the live records, which win
+        long oldMillis = today.minusDays(50).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Path profile = Files.createDirectory(dir.resolve("profile"));
+        CalorieArchive.write(profile.resolve(CaloriePersistence.ARCHIVE), old,
+            List.of(new FoodEntry(oldMillis, "Cake", 700), new FoodEntry(oldMillis + 1, "Apple", 50)));
+
+        CalorieEngine engine = new CalorieEngine(profile, 2000, Clock.systemDefaultZone());
+        try {
+            engine.load().join();
+            engine.logFood(new FoodEntry(System.currentTimeMillis(), "Apple", 95)).join();
+
+            CalorieSeries range = engine.range(today.minusDays(40), today).join();
+            assertEquals(41, range.size());
+            assertEquals(1040, range.get(today.minusDays(40)));
+            assertEquals(1001, range.get(today.minusDays(1)));
+            assertEquals(95, range.get(today)); // Live, not archived
+
+            Map<String, Long> foods = engine.caloriesByFood(0, System.currentTimeMillis() + 1).join();
+            assertEquals(Map.of("Cake", 700L, "Apple", 145L), foods);
+        } finally {
+            engine.close();
+        }
+    }
+}
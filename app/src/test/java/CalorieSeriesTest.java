@@ -0,0 +1,31 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CalorieSeriesTest {
+    private static List<Long> daysIn(CalorieSeries series, long from, long to) {
+        List<Long> days = new ArrayList<>();
+        series.forEachInRange(from, to, (day, calories) -> days.add(day));
+        return days;
+    }
+
+    // Bounds far outside the recorded days used to overflow the int index.
+    @Test
+    void rangeBoundsAreClampedWithoutOverflow() {
+        CalorieSeries series = new CalorieSeries();
+        series.put(20_000, 1800);
+        series.put(20_002, 2100);
+        series.put(20_100, 1500);
+
+        assertEquals(List.of(20_000L, 20_002L, 20_100L), daysIn(series, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(List.of(20_002L), daysIn(series, 20_001, 20_099));
+        assertEquals(List.of(), daysIn(series, Long.MIN_VALUE, Long.MIN_VALUE + 10));
+        assertEquals(List.of(), daysIn(series, Long.MAX_VALUE - 10, Long.MAX_VALUE));
+        assertEquals(List.of(), daysIn(series, Long.MIN_VALUE, 19_999));
+        assertEquals(List.of(), daysIn(series, 20_101, Long.MAX_VALUE));
+        assertEquals(List.of(), daysIn(series, 20_050, 20_010));
+        assertEquals(List.of(), daysIn(new CalorieSeries(), Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,246 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Stress test of CalorieStateModel. Many threads send logFood, setGoal, rollover and
+// importRecords commands at once while reader threads check every published snapshot.
+// Each command is recorded in the order it was enqueued, which is the order the model runs
+// it; that sequence is then replayed one command at a time on a fresh model, and the
+// concurrent run must end in the same state (day, total, goal and today's entries) with
+// the same daily totals, both in memory and after reopening its files.
+//
+//   mvn -B test -pl app -Dtest=CalorieStressTest -Dstress.threads=16 -Dstress.ops=5000
+class CalorieStressTest {
+    private static final int THREADS = Integer.getInteger("stress.threads", 8);
+    private static final int OPS_PER_THREAD = Integer.getInteger("stress.ops", 2000);
+    private static final int ROUNDS = Integer.getInteger("stress.rounds", 3);
+    private static final long SEED = Long.getLong("stress.seed", 42);
+
+    private static final int IMPORT_EVERY = 500; // Ops per thread between imports
+    private static final int MAX_ROLLOVER_DAYS = 300; // Stays inside the day-store's date bound
+    private static final int IMPORT_DAYS = 365; // All before the first day, so today never changes
+
+    // One command, kept so it can be sent again to the serial model.
+    private static final class Op {
+        final String description;
+        final Function<CalorieStateModel, CompletableFuture<?>> command;
+
+        Op(String description, Function<CalorieStateModel, CompletableFuture<?>> command) {
+            this.description = description;
+            this.command = command;
+        }
+    }
+
+    // Rolls over to the day after the last rollover; send() picks the day, so that later
+    // sends always get later days
+    private static final Op NEXT_DAY = new Op("rollover", null);
+
+    @TempDir
+    Path workDir;
+
+    private Path importCsv;
+    private final LocalDate firstDay = LocalDate.now();
+    private final List<Op> order = new ArrayList<>(); // Guarded by itself
+    private final AtomicInteger rolloverDays = new AtomicInteger();
+
+    @Test
+    void concurrentCommandsMatchSerialReplay() throws Exception {
+        importCsv = workDir.resolve("import.csv");
+        writeImport(importCsv, firstDay);
+        for (int round = 0; round < ROUNDS; round++) {
+            order.clear();
+            rolloverDays.set(0);
+            runRound(Files.createDirectory(workDir.resolve("round-" + round)), SEED + round);
+        }
+    }
+
+    private void runRound(Path roundDir, long seed) throws Exception {
+        Path concurrentDir = Files.createDirectory(roundDir.resolve("concurrent"));
+        CalorieStateModel model = new CalorieStateModel(new CaloriePersistence(concurrentDir),
+            CalorieEngine.DEFAULT_CALORIE_GOAL, Clock.systemDefaultZone());
+        model.load().join();
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> readerFailure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread reader = new Thread(() -> {
+                while (writing.get() && readerFailure.get() == null) {
+                    String problem = checkSnapshot(model.current());
+                    if (problem != null) {
+                        readerFailure.compareAndSet(null, problem);
+                    }
+                }
+            }, "stress-reader-" + i);
+            reader.start();
+            readers.add(reader);
+        }
+
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        List<List<CompletableFuture<?>>> results = new ArrayList<>(); // Read after the writers are joined
+        for (int t = 0; t < THREADS; t++) {
+            Random random = new Random(seed * 31 + t);
+            String prefix = "t" + t + "-";
+            List<CompletableFuture<?>> mine = new ArrayList<>();
+            Thread writer = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < OPS_PER_THREAD; i++) {
+                    mine.add(send(model, nextOp(random, prefix + i, i)));
+                }
+            }, "stress-writer-" + t);
+            writer.start();
+            writers.add(writer);
+            results.add(mine);
+        }
+        go.countDown();
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            writers.get(t).join();
+            pending.addAll(results.get(t));
+        }
+        CalorieState concurrentState;
+        CalorieSeries concurrentRecords;
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+            concurrentState = model.current();
+            concurrentRecords = model.copyRecords().join();
+        } finally {
+            writing.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            model.close();
+        }
+        assertNull(readerFailure.get(), "Reader saw a torn snapshot");
+
+        Path serialDir = Files.createDirectory(roundDir.resolve("serial"));
+        CalorieStateModel serial = new CalorieStateModel(new CaloriePersistence(serialDir),
+            CalorieEngine.DEFAULT_CALORIE_GOAL, Clock.systemDefaultZone());
+        CalorieState serialState;
+        CalorieSeries serialRecords;
+        try {
+            serial.load().join();
+            for (Op op : order) {
+                try {
+                    op.command.apply(serial).join();
+                } catch (CompletionException e) {
+                    fail("Serial replay of " + op.description + " failed", e.getCause());
+                }
+            }
+            serialState = serial.current();
+            serialRecords = serial.copyRecords().join();
+        } finally {
+            serial.close();
+        }
+
+        CaloriePersistence reopened = new CaloriePersistence(concurrentDir);
+        CalorieSeries reloadedRecords = reopened.load().join();
+        reopened.close();
+
+        assertStatesMatch(serialState, concurrentState);
+        assertSeriesMatch("records", serialRecords, concurrentRecords);
+        assertSeriesMatch("reloaded records", serialRecords, reloadedRecords);
+    }
+
+    // Mostly food, with goal changes, rollovers to later days and the occasional import.
+    private Op nextOp(Random random, String name, int i) {
+        if (i % IMPORT_EVERY == IMPORT_EVERY - 1) {
+            return new Op("import", m -> m.importRecords(importCsv, CsvImporter.Mapping.legacy(), null));
+        }
+        int roll = random.nextInt(100);
+        if (roll < 2) {
+            return NEXT_DAY;
+        }
+        if (roll < 10) {
+            double goal = 1200 + random.nextInt(2000);
+            return new Op("setGoal " + goal, m -> m.setGoal(goal));
+        }
+        int calories = 1 + random.nextInt(900);
+        FoodEntry entry = new FoodEntry(System.currentTimeMillis(), name, calories);
+        return new Op("logFood " + name, m -> m.addFood(entry));
+    }
+
+    // Enqueues the command and records it under one lock, so the recorded order is the
+    // order the model's single thread runs them in.
+    private CompletableFuture<?> send(CalorieStateModel model, Op op) {
+        synchronized (order) {
+            if (op == NEXT_DAY) {
+                LocalDate day = firstDay.plusDays(Math.min(rolloverDays.incrementAndGet(), MAX_ROLLOVER_DAYS));
+                op = new Op("rollover " + day, m -> m.rollover(day));
+            }
+            order.add(op);
+            return op.command.apply(model);
+        }
+    }
+
+    // Imports never touch today, so every snapshot's total is the sum of its entries.
+    private static String checkSnapshot(CalorieState state) {
+        int sum = 0;
+        for (FoodEntry entry : state.getTodayEntries()) {
+            sum += entry.getCalories();
+        }
+        return sum == state.getDailyCalories() ? null
+            : "version " + state.getVersion() + " with total " + state.getDailyCalories() + " but entries summing to " + sum;
+    }
+
+    private static void assertStatesMatch(CalorieState serial, CalorieState concurrent) {
+        assertEquals(serial.getDay(), concurrent.getDay(), "day");
+        assertEquals(serial.getDailyCalories(), concurrent.getDailyCalories(), "daily total");
+        assertEquals(serial.getCalorieGoal(), concurrent.getCalorieGoal(), "goal");
+        List<FoodEntry> expected = serial.getTodayEntries();
+        List<FoodEntry> actual = concurrent.getTodayEntries();
+        assertEquals(expected.size(), actual.size(), "entries today");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getName(), actual.get(i).getName(), "entry " + i);
+            assertEquals(expected.get(i).getCalories(), actual.get(i).getCalories(), "calories of entry " + i);
+        }
+    }
+
+    private static void assertSeriesMatch(String what, CalorieSeries expected, CalorieSeries actual) {
+        assertEquals(expected.size(), actual.size(), what + ": days recorded");
+        if (expected.isEmpty()) {
+            return;
+        }
+        for (long day = expected.firstDay(); day <= expected.lastDay(); day++) {
+            assertEquals(expected.get(day), actual.get(day), what + " on " + LocalDate.ofEpochDay(day));
+        }
+    }
+
+    private static void writeImport(Path csv, LocalDate before) throws IOException {
+        Random random = new Random(7);
+        LocalDate start = before.minusDays(IMPORT_DAYS);
+        try (BufferedWriter writer = Files.newBufferedWriter(csv)) {
+            writer.append("Day,Total Calories\n");
+            for (int i = 0; i < IMPORT_DAYS; i++) {
+                writer.append(start.plusDays(i).toString())
+                      .append(",")
+                      .append(String.valueOf(1200 + random.nextInt(2000)))
+                      .append("\n");
+            }
+        }
+    }
+}
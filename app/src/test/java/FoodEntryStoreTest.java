@@ -0,0 +1,75 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// The day, week and month rollups against a fixture summed by hand. 2024-01-29 is a Monday
+// and 2024 is a leap year, so February has 29 days.
+class FoodEntryStoreTest {
+    private static final LocalDate MONDAY = LocalDate.of(2024, 1, 29);
+
+    @TempDir
+    Path dir;
+
+    private static FoodEntry at(LocalDate day, int hour, String name, int calories, float protein, float carbs, float fat) {
+        long millis = day.atTime(hour, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new FoodEntry(millis, name, calories, protein, carbs, fat, 100);
+    }
+
+    private static void addFixture(FoodEntryStore store) {
+        store.add(at(LocalDate.of(2024, 1, 28), 23, "Cake", 999, 5, 100, 50)); // Sunday before the first week
+        store.add(at(MONDAY, 0, "Oats", 500, 10, 80, 5)); // First minute of the day
+        store.add(at(MONDAY, 13, "Soup", 300, 12, 30, 8));
+        store.add(at(LocalDate.of(2024, 1, 31), 8, "Apple", 200, 1, 50, 0));
+        store.add(at(LocalDate.of(2024, 2, 1), 19, "Pasta", 700, 25, 120, 10));
+        store.add(at(LocalDate.of(2024, 2, 5), 12, "Salad", 400, 8, 20, 25)); // Monday of the second week
+        store.add(at(LocalDate.of(2024, 2, 29), 12, "Apple", 100, 0.5f, 25, 0));
+        store.add(at(LocalDate.of(2024, 3, 1), 12, "Rice", 250, 5, 55, 1));
+    }
+
+    @Test
+    void rollsUpDaysWeeksAndMonths() throws Exception {
+        FoodEntryStore store = FoodEntryStore.load(dir.resolve("food.bin"));
+        addFixture(store);
+        assertRollups(store);
+    }
+
+    @Test
+    void rollsUpTheSameAfterReload() throws Exception {
+        Path path = dir.resolve("food.bin");
+        FoodEntryStore store = FoodEntryStore.load(path);
+        addFixture(store);
+        store.persist();
+        assertRollups(FoodEntryStore.load(path));
+    }
+
+    private static void assertRollups(FoodEntryStore store) {
+        long monday = MONDAY.toEpochDay();
+        assertArrayEquals(new int[] {800, 0, 200, 700}, store.dailyCalories(monday, monday + 3));
+        assertArrayEquals(new int[] {999}, store.dailyCalories(monday - 1, monday - 1));
+        assertArrayEquals(new int[] {0, 0}, store.dailyCalories(monday + 40, monday + 41));
+
+        // Jan 29 - Feb 4: 500 + 300 + 200 + 700; Feb 5 - 11: 400; Feb 12 - 18: nothing
+        assertArrayEquals(new int[] {1700, 400, 0}, store.weeklyCalories(monday, 3));
+
+        // January includes the Sunday entry; February includes the 29th
+        assertArrayEquals(new int[] {1999, 1200, 250}, store.monthlyCalories(YearMonth.of(2024, 1), 3));
+        assertArrayEquals(new int[] {1200}, store.monthlyCalories(YearMonth.of(2024, 2), 1));
+
+        FoodEntryStore.NutrientTotals february = store.totals(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29));
+        assertEquals(3, february.entries);
+        assertEquals(1200, february.calories);
+        assertEquals(33.5, february.protein, 1e-6);
+        assertEquals(165, february.carbs, 1e-6);
+        assertEquals(35, february.fat, 1e-6);
+
+        FoodEntryStore.NutrientTotals none = store.totals(LocalDate.of(2024, 4, 1), LocalDate.of(2024, 4, 30));
+        assertEquals(0, none.entries);
+        assertEquals(0, none.calories);
+    }
+}
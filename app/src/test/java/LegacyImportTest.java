@@ -0,0 +1,55 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// The legacy CSV import must survive a crash part way through: the day-store stays marked
+// as pending until the import completes, and the next start runs it again.
+class LegacyImportTest {
+    private static final LocalDate FIRST = LocalDate.of(2024, 3, 1);
+
+    @TempDir
+    Path dir;
+
+    private static CalorieSeries load(Path dir) {
+        CaloriePersistence persistence = new CaloriePersistence(dir);
+        try {
+            return persistence.load().join();
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    void importCutShortRunsAgain() throws Exception {
+        Files.writeString(dir.resolve(CaloriePersistence.RECORDS_CSV),
+            "Day,Total Calories\n2024-03-01,1800\n2024-03-02,2100\n2024-03-03,1950\n");
+
+        // The process died after the first row reached the day-store
+        DayStore crashed = DayStore.open(dir.resolve(CaloriePersistence.DAY_STORE));
+        assertTrue(crashed.isImportPending());
+        crashed.put(FIRST, 1800);
+        crashed.close();
+
+        CalorieSeries days = load(dir);
+        assertEquals(3, days.size());
+        assertEquals(2100, days.get(FIRST.plusDays(1)));
+        assertEquals(1950, days.get(FIRST.plusDays(2)));
+
+        DayStore done = DayStore.open(dir.resolve(CaloriePersistence.DAY_STORE));
+        assertFalse(done.isImportPending());
+        done.close();
+
+        // Once complete, the CSV is not read again
+        Files.writeString(dir.resolve(CaloriePersistence.RECORDS_CSV),
+            "Day,Total Calories\n2024-03-01,1000\n2024-03-04,1000\n");
+        CalorieSeries reloaded = load(dir);
+        assertEquals(3, reloaded.size());
+        assertEquals(1800, reloaded.get(FIRST));
+    }
+}
@@ -0,0 +1,60 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProfileStoreTest {
+    @TempDir
+    Path root;
+
+    // The dashboard pins its profile; traffic to many others must not evict and close it.
+    @Test
+    void pinnedProfileSurvivesEviction() {
+        ProfileStore profiles = new ProfileStore(root, 2, 2000, Clock.systemDefaultZone(), profile -> state -> { });
+        try {
+            CalorieEngine pinned = profiles.pin(ProfileStore.DEFAULT_PROFILE).join();
+            for (int i = 0; i < 10; i++) {
+                profiles.get("other" + i).join();
+            }
+            assertEquals(2, profiles.residentCount());
+            assertSame(pinned, profiles.get(ProfileStore.DEFAULT_PROFILE).join());
+            assertEquals(95, pinned.logFood(new FoodEntry(System.currentTimeMillis(), "Apple", 95)).join().getDailyCalories());
+
+            profiles.unpin(ProfileStore.DEFAULT_PROFILE);
+            profiles.get("after1").join();
+            profiles.get("after2").join();
+            assertEquals(2, profiles.residentCount());
+        } finally {
+            profiles.close();
+        }
+    }
+
+    // Only created profiles exist, and they still exist after a restart.
+    @Test
+    void createdProfilesExist() throws Exception {
+        ProfileStore profiles = new ProfileStore(root, 2, 2000, Clock.systemDefaultZone(), profile -> state -> { });
+        try {
+            assertTrue(profiles.exists(ProfileStore.DEFAULT_PROFILE));
+            assertFalse(profiles.exists("alice"));
+            assertFalse(profiles.exists("../alice"));
+            profiles.create("alice").join();
+            assertTrue(profiles.exists("alice"));
+        } finally {
+            profiles.close();
+        }
+        ProfileStore reopened = new ProfileStore(root, 2, 2000, Clock.systemDefaultZone(), profile -> state -> { });
+        try {
+            assertTrue(reopened.exists("alice"));
+            assertFalse(reopened.exists("bob"));
+            assertEquals(List.of(ProfileStore.DEFAULT_PROFILE, "alice"), reopened.profiles());
+        } finally {
+            reopened.close();
+        }
+    }
+}
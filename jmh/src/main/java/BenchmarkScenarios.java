@@ -0,0 +1,386 @@
+import calorie.jmh.EnergyScenarios;
+import calorie.jmh.EventScenarios;
+import calorie.jmh.HistoryScenarios;
+import calorie.jmh.HttpScenarios;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+// The benchmark scenarios, in the default package next to the app classes they call; the
+// JMH benchmarks in calorie.jmh load them by name (see calorie.jmh.Scenarios).
+public final class BenchmarkScenarios {
+    private BenchmarkScenarios() {
+    }
+
+    public static final class History implements HistoryScenarios {
+        private Path workDir;
+        private Path history;
+        private Path loaded;
+        private CsvImporter importer;
+        private CalorieSeries series;
+        private CalorieStateModel reader;
+        private Path writeDir;
+        private Path importDir;
+        private CalorieStateModel writer;
+
+        @Override
+        public void setUp(Path workDir, int days) throws Exception {
+            this.workDir = workDir;
+            history = workDir.resolve("history.csv");
+            writeHistory(history, days);
+            importer = new CsvImporter(CsvImporter.Mapping.legacy(), null);
+            loaded = Files.createDirectory(workDir.resolve("loaded"));
+            Files.copy(history, loaded.resolve(CaloriePersistence.RECORDS_CSV));
+            CaloriePersistence first = new CaloriePersistence(loaded);
+            series = first.load().join();
+            first.close();
+        }
+
+        @Override
+        public Object parseCsv() throws Exception {
+            return importer.run(history, workDir.resolve("rejected.csv"), (epochDay, calories) -> { });
+        }
+
+        @Override
+        public Object reopen() {
+            CaloriePersistence persistence = new CaloriePersistence(loaded);
+            CalorieSeries days = persistence.load().join();
+            persistence.close();
+            return days;
+        }
+
+        @Override
+        public Object export() {
+            if (reader == null) {
+                reader = new CalorieStateModel(new CaloriePersistence(loaded), 2000);
+                reader.load().join();
+            }
+            return reader.exportCsv(workDir.resolve("export.csv")).join();
+        }
+
+        @Override
+        public Object buildDataset() {
+            return MonthlyRecordsWindow.buildDataset(series);
+        }
+
+        @Override
+        public void resetWrites() throws Exception {
+            if (writer != null) {
+                writer.close();
+                deleteRecursively(writeDir);
+                deleteRecursively(importDir);
+            }
+            writeDir = Files.createTempDirectory(workDir, "write");
+            try (Stream<Path> files = Files.list(loaded)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.copy(file, writeDir.resolve(file.getFileName()));
+                }
+            }
+            importDir = Files.createTempDirectory(workDir, "import");
+            Files.copy(history, importDir.resolve(CaloriePersistence.RECORDS_CSV));
+            writer = new CalorieStateModel(new CaloriePersistence(writeDir), 2000);
+            writer.load().join();
+        }
+
+        @Override
+        public Object importHistory() {
+            CaloriePersistence persistence = new CaloriePersistence(importDir);
+            CalorieSeries days = persistence.load().join();
+            persistence.close();
+            return days;
+        }
+
+        @Override
+        public Object addFood(int count) {
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < count - 1; i++) {
+                writer.addFood(new FoodEntry(now, "Apple", 95));
+            }
+            return writer.addFood(new FoodEntry(now, "Apple", 95)).join();
+        }
+
+        @Override
+        public Object rollover(int count) {
+            LocalDate day = writer.current().getDay();
+            for (int i = 0; i < count - 1; i++) {
+                day = day.plusDays(1);
+                writer.rollover(day);
+            }
+            return writer.rollover(day.plusDays(1)).join();
+        }
+
+        @Override
+        public void tearDown() throws Exception {
+            if (reader != null) {
+                reader.close();
+            }
+            if (writer != null) {
+                writer.close();
+            }
+            deleteRecursively(workDir);
+        }
+    }
+
+    public static final class Energy implements EnergyScenarios {
+        private int rows;
+        private double[] height;
+        private double[] weight;
+        private int[] age;
+        private byte[] male;
+        private byte[] activity;
+        private double[] bmi;
+        private double[] tdee;
+
+        @Override
+        public void setUp(int rows) {
+            this.rows = rows;
+            Random random = new Random(42);
+            height = new double[rows];
+            weight = new double[rows];
+            age = new int[rows];
+            male = new byte[rows];
+            activity = new byte[rows];
+            for (int i = 0; i < rows; i++) {
+                height[i] = 150 + random.nextInt(50);
+                weight[i] = 45 + random.nextInt(70);
+                age[i] = 18 + random.nextInt(60);
+                male[i] = (byte) random.nextInt(2);
+                activity[i] = (byte) random.nextInt(EnergyBatch.ACTIVITY_LEVELS.length);
+            }
+            bmi = new double[rows];
+            tdee = new double[rows];
+        }
+
+        @Override
+        public Object scalar() {
+            for (int i = 0; i < rows; i++) {
+                bmi[i] = CalorieEngine.bmi(weight[i], height[i]);
+                tdee[i] = CalorieEngine.dailyCalorieNeeds(male[i] == 1, weight[i], height[i], age[i],
+                    EnergyBatch.ACTIVITY_LEVELS[activity[i]]);
+            }
+            return tdee;
+        }
+
+        @Override
+        public Object loop() {
+            EnergyBatch.computeRange(height, weight, age, male, activity, bmi, tdee, 0, rows);
+            return tdee;
+        }
+
+        @Override
+        public Object forkJoin() {
+            EnergyBatch.compute(height, weight, age, male, activity, bmi, tdee);
+            return tdee;
+        }
+    }
+
+    public static final class Http implements HttpScenarios {
+        private static final byte[] ENTRY = "name=Apple&calories=95".getBytes(StandardCharsets.UTF_8);
+
+        private Path root;
+        private int clients;
+        private ProfileStore profiles;
+        private CalorieHttpServer server;
+        private ExecutorService pool;
+        private URL log;
+        private URL day;
+        private URL range;
+
+        @Override
+        public void setUp(Path workDir, int clients) throws Exception {
+            this.root = workDir;
+            this.clients = clients;
+            writeHistory(root.resolve(CaloriePersistence.RECORDS_CSV), 365);
+            profiles = new ProfileStore(root, 16, CalorieEngine.DEFAULT_CALORIE_GOAL,
+                Clock.systemDefaultZone(), profile -> state -> { });
+            server = new CalorieHttpServer(profiles, new InetSocketAddress("127.0.0.1", 0));
+            server.start();
+            pool = CalorieHttpServer.newRequestExecutor();
+            // Lets every client keep its connection; the JDK caches 5 per host by default
+            System.setProperty("http.maxConnections", String.valueOf(Math.max(5, clients)));
+            String base = "http://127.0.0.1:" + server.getPort() + "/api/";
+            LocalDate today = LocalDate.now();
+            log = new URL(base + "log");
+            day = new URL(base + "day");
+            range = new URL(base + "range?from=" + today.minusDays(30) + "&to=" + today);
+        }
+
+        @Override
+        public void reset() {
+            profiles.get(ProfileStore.DEFAULT_PROFILE).join().clearLog().join();
+        }
+
+        @Override
+        public void log(int requests) throws Exception {
+            load(requests, log, ENTRY);
+        }
+
+        @Override
+        public void day(int requests) throws Exception {
+            load(requests, day, null);
+        }
+
+        @Override
+        public void range(int requests) throws Exception {
+            load(requests, range, null);
+        }
+
+        @Override
+        public void tearDown() throws Exception {
+            pool.shutdown();
+            server.close();
+            profiles.close();
+            deleteRecursively(root);
+        }
+
+        private void load(int requests, URL url, byte[] form) throws Exception {
+            List<Future<?>> done = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int share = requests / clients + (c < requests % clients ? 1 : 0);
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < share; i++) {
+                        send(url, form);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        }
+
+        // One request; the response is read fully so the connection goes back to the keep-alive cache.
+        private static void send(URL url, byte[] form) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            if (form != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(form);
+                }
+            }
+            int status = connection.getResponseCode();
+            try (InputStream in = status == 200 ? connection.getInputStream() : connection.getErrorStream()) {
+                in.readAllBytes();
+            }
+            if (status != 200) {
+                throw new IOException("HTTP " + status + " from " + url);
+            }
+        }
+    }
+
+    public static final class Events implements EventScenarios {
+        private Path dir;
+        private Path logFile;
+        private Path snapshotFile;
+        private CalorieEventLog log;
+        private long[] timestamps;
+        private final Random random = new Random(42);
+
+        @Override
+        public void setUp(Path workDir, int events) throws Exception {
+            dir = workDir;
+            logFile = dir.resolve(CaloriePersistence.EVENT_LOG);
+            snapshotFile = dir.resolve(CaloriePersistence.EVENT_SNAPSHOTS);
+            timestamps = new long[events];
+            long start = System.currentTimeMillis() - 5L * 365 * 86_400_000L;
+            long step = 5L * 365 * 86_400_000L / events;
+            log = CalorieEventLog.open(logFile, snapshotFile);
+            LocalDate day = LocalDate.now().minusDays(5 * 365);
+            for (int i = 0; i < events; i++) {
+                long at = start + i * step;
+                int kind = random.nextInt(20);
+                CalorieEvent event;
+                if (kind == 0) {
+                    day = day.plusDays(1);
+                    event = CalorieEvent.dayRolled(at, day);
+                } else if (kind == 1) {
+                    event = CalorieEvent.goalChanged(at, day, 1500 + random.nextInt(1000));
+                } else {
+                    event = CalorieEvent.foodAdded(at, day, new FoodEntry(at, "Food " + random.nextInt(50),
+                        random.nextInt(900), 10, 20, 5, 100));
+                }
+                log.append(event);
+                timestamps[i] = at;
+            }
+            log.flush();
+        }
+
+        @Override
+        public Object append(int count) throws Exception {
+            long at = System.currentTimeMillis();
+            LocalDate today = LocalDate.now();
+            for (int i = 0; i < count; i++) {
+                log.append(CalorieEvent.foodAdded(at, today, new FoodEntry(at, "Apple", 95)));
+            }
+            return log.size();
+        }
+
+        @Override
+        public Object replay() throws Exception {
+            return log.replayAll();
+        }
+
+        @Override
+        public Object timeTravel(int count) throws Exception {
+            CalorieState state = null;
+            for (int i = 0; i < count; i++) {
+                state = log.stateAt(timestamps[random.nextInt(timestamps.length)], CalorieEngine.DEFAULT_CALORIE_GOAL);
+            }
+            return state;
+        }
+
+        @Override
+        public Object open() throws Exception {
+            CalorieEventLog reopened = CalorieEventLog.open(logFile, snapshotFile);
+            long size = reopened.size();
+            reopened.close();
+            return size;
+        }
+
+        @Override
+        public void tearDown() throws Exception {
+            log.close();
+            deleteRecursively(dir);
+        }
+    }
+
+    // Synthetic history ending today, in the legacy CSV format; fixed seed so runs match.
+    private static void writeHistory(Path csv, int days) throws IOException {
+        Random random = new Random(42);
+        LocalDate start = LocalDate.now().minusDays(days);
+        try (BufferedWriter writer = Files.newBufferedWriter(csv)) {
+            writer.append("Day,Total Calories\n");
+            for (int i = 0; i < days; i++) {
+                writer.append(start.plusDays(i).toString())
+                      .append(",")
+                      .append(String.valueOf(1200 + random.nextInt(2000)))
+                      .append("\n");
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package calorie.jmh;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+
+// Runs the benchmarks with JMH, then writes one CSV row per benchmark and parameter set.
+// When a baseline report from an earlier release is given, any benchmark that got slower
+// by more than the threshold is reported and the exit code is 1. Every other argument goes
+// to JMH, e.g. a benchmark regex or -p days=365; -h, -l and -lp are JMH's own.
+//
+//   java -jar jmh/target/benchmarks.jar [--out results.csv] [--baseline old.csv]
+//        [--threshold 0.10] [JMH options]
+public final class BenchmarkMain {
+    private static final List<String> JMH_ONLY = Arrays.asList("-h", "-l", "-lp", "-lprof", "-lrf");
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path out = Paths.get("benchmark-results.csv");
+        Path baseline = null;
+        double threshold = 0.10;
+        List<String> jmhArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--out") && i + 1 < args.length) {
+                out = Paths.get(args[++i]);
+            } else if (args[i].equals("--baseline") && i + 1 < args.length) {
+                baseline = Paths.get(args[++i]);
+            } else if (args[i].equals("--threshold") && i + 1 < args.length) {
+                threshold = Double.parseDouble(args[++i]);
+            } else {
+                jmhArgs.add(args[i]);
+            }
+        }
+        if (jmhArgs.stream().anyMatch(JMH_ONLY::contains)) {
+            org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+            return;
+        }
+
+        Collection<RunResult> results = new Runner(new CommandLineOptions(jmhArgs.toArray(new String[0]))).run();
+        Map<String, Result<?>> scores = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+        for (RunResult run : results) {
+            String key = key(run.getParams());
+            keys.add(key);
+            scores.put(key, run.getPrimaryResult());
+        }
+        writeReport(out, keys, scores);
+        System.out.println("Wrote " + out.toAbsolutePath());
+        if (baseline != null && compare(baseline, threshold, keys, scores) > 0) {
+            System.exit(1);
+        }
+    }
+
+    // The benchmark without its package, then its parameters: HistoryBenchmark.export@days=365
+    private static String key(BenchmarkParams params) {
+        String name = params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.',
+            params.getBenchmark().lastIndexOf('.') - 1) + 1);
+        StringBuilder key = new StringBuilder(name);
+        String separator = "@";
+        for (String param : params.getParamsKeys()) {
+            key.append(separator).append(param).append('=').append(params.getParam(param));
+            separator = ";";
+        }
+        return key.toString();
+    }
+
+    private static void writeReport(Path out, List<String> keys, Map<String, Result<?>> scores) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(out)) {
+            writer.append("benchmark,score,error,unit\n");
+            for (String key : keys) {
+                Result<?> r = scores.get(key);
+                writer.append(String.format(Locale.ROOT, "%s,%.3f,%.3f,%s%n",
+                    key, r.getScore(), r.getScoreError(), r.getScoreUnit()));
+            }
+        }
+    }
+
+    // Prints each benchmark against the baseline report and returns how many regressed.
+    // Every benchmark reports time per operation, so a higher score is slower.
+    private static int compare(Path baselineCsv, double threshold, List<String> keys, Map<String, Result<?>> scores)
+            throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(baselineCsv)) {
+            String line = reader.readLine(); // Skip the header row
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length >= 2) {
+                    baseline.put(parts[0], Double.parseDouble(parts[1]));
+                }
+            }
+        }
+        int regressions = 0;
+        System.out.println();
+        System.out.println("Compared with " + baselineCsv + " (threshold " + Math.round(threshold * 100) + "%):");
+        for (String key : keys) {
+            Double before = baseline.get(key);
+            if (before == null) {
+                System.out.printf(Locale.ROOT, "  %-40s new%n", key);
+                continue;
+            }
+            double change = (scores.get(key).getScore() - before) / before;
+            boolean regressed = change > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf(Locale.ROOT, "  %-40s %+7.1f%%%s%n", key, change * 100, regressed ? "  REGRESSION" : "");
+        }
+        return regressions;
+    }
+}
@@ -0,0 +1,52 @@
+package calorie.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// BMI and TDEE for a cohort of a million rows: per person, the batch loop and fork/join.
+// Time per row.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EnergyBenchmark {
+    static final int ROWS = 1_000_000;
+
+    private EnergyScenarios scenarios;
+
+    @Setup
+    public void setUp() {
+        scenarios = Scenarios.load(EnergyScenarios.class, "Energy");
+        scenarios.setUp(ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Object scalar() {
+        return scenarios.scalar();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Object loop() {
+        return scenarios.loop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Object forkJoin() {
+        return scenarios.forkJoin();
+    }
+}
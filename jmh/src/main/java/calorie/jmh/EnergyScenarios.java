@@ -0,0 +1,13 @@
+package calorie.jmh;
+
+// One cohort of rows through the per-person CalorieEngine math, the branch-free EnergyBatch
+// loop on one core, and EnergyBatch on fork/join.
+public interface EnergyScenarios {
+    void setUp(int rows);
+
+    Object scalar();
+
+    Object loop();
+
+    Object forkJoin();
+}
@@ -0,0 +1,75 @@
+package calorie.jmh;
+
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The event log with events already in it: appending (a fixed batch per iteration, so the
+// file does not grow without bound), a full replay, reopening from the last snapshot and
+// rebuilding the state at random instants. Time per call; per event for append and
+// timeTravel.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EventLogBenchmark {
+    static final int APPENDS = 10_000;
+    static final int LOOKUPS = 200;
+
+    @Param({"1000000"})
+    public int events;
+
+    private EventScenarios scenarios;
+
+    @Setup
+    public void setUp() throws Exception {
+        scenarios = Scenarios.load(EventScenarios.class, "Events");
+        scenarios.setUp(Files.createTempDirectory("calorie-bench"), events);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        scenarios.tearDown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    @OperationsPerInvocation(APPENDS)
+    public Object append() throws Exception {
+        return scenarios.append(APPENDS);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object replay() throws Exception {
+        return scenarios.replay();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public Object timeTravel() throws Exception {
+        return scenarios.timeTravel(LOOKUPS);
+    }
+
+    @Benchmark
+    public Object open() throws Exception {
+        return scenarios.open();
+    }
+}
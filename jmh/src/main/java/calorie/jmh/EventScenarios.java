@@ -0,0 +1,20 @@
+package calorie.jmh;
+
+import java.nio.file.Path;
+
+// A synthetic event log spread over five years: appending to it, replaying all of it from
+// the start (what the snapshots save at startup), reopening it from the last snapshot, and
+// rebuilding the state at random instants.
+public interface EventScenarios {
+    void setUp(Path workDir, int events) throws Exception;
+
+    Object append(int count) throws Exception;
+
+    Object replay() throws Exception;
+
+    Object timeTravel(int count) throws Exception;
+
+    Object open() throws Exception;
+
+    void tearDown() throws Exception;
+}
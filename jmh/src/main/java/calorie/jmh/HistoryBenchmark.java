@@ -0,0 +1,62 @@
+package calorie.jmh;
+
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The read paths over 30 days, 1 year and 10 years of history: parsing the CSV, reopening
+// the day-store, exporting and building the chart dataset. Time per call.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+    @Param({"30", "365", "3650"})
+    public int days;
+
+    private HistoryScenarios scenarios;
+
+    @Setup
+    public void setUp() throws Exception {
+        scenarios = Scenarios.load(HistoryScenarios.class, "History");
+        scenarios.setUp(Files.createTempDirectory("calorie-bench"), days);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        scenarios.tearDown();
+    }
+
+    @Benchmark
+    public Object csvParse() throws Exception {
+        return scenarios.parseCsv();
+    }
+
+    @Benchmark
+    public Object loadReopen() {
+        return scenarios.reopen();
+    }
+
+    @Benchmark
+    public Object export() {
+        return scenarios.export();
+    }
+
+    @Benchmark
+    public Object dataset() {
+        return scenarios.buildDataset();
+    }
+}
@@ -0,0 +1,31 @@
+package calorie.jmh;
+
+import java.nio.file.Path;
+
+// Loading, logging, rollover, export and the chart dataset against days of synthetic history.
+public interface HistoryScenarios {
+    void setUp(Path workDir, int days) throws Exception;
+
+    // Tokenizing alone, into a sink that keeps nothing
+    Object parseCsv() throws Exception;
+
+    // Every later start: reopens the day-store and replays the journal
+    Object reopen();
+
+    Object export();
+
+    Object buildDataset();
+
+    // A fresh copy of the loaded profile and of the legacy CSV, so every write iteration
+    // starts from the same files
+    void resetWrites() throws Exception;
+
+    // First start with a legacy CSV: maps a new day-store and imports every row
+    Object importHistory();
+
+    Object addFood(int count);
+
+    Object rollover(int count);
+
+    void tearDown() throws Exception;
+}
@@ -0,0 +1,71 @@
+package calorie.jmh;
+
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The write paths over the same histories: the first start's CSV import, logging food and
+// rolling the day over. These change what they measure (today's log grows, rollovers move
+// toward the day-store's date bound), so each iteration is one fixed batch on a fresh copy
+// of the profile instead of as many calls as fit in a time window. Time per entry or
+// rollover; per import for loadImport.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HistoryWriteBenchmark {
+    static final int BATCH = 200;
+
+    @Param({"30", "365", "3650"})
+    public int days;
+
+    private HistoryScenarios scenarios;
+
+    @Setup
+    public void setUp() throws Exception {
+        scenarios = Scenarios.load(HistoryScenarios.class, "History");
+        scenarios.setUp(Files.createTempDirectory("calorie-bench"), days);
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() throws Exception {
+        scenarios.resetWrites();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        scenarios.tearDown();
+    }
+
+    @Benchmark
+    public Object loadImport() {
+        return scenarios.importHistory();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object addFood() {
+        return scenarios.addFood(BATCH);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object rollover() {
+        return scenarios.rollover(BATCH);
+    }
+}
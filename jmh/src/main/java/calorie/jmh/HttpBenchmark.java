@@ -0,0 +1,73 @@
+package calorie.jmh;
+
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Load test of the HTTP API on localhost: REQUESTS requests per call, spread over clients
+// concurrent clients. Time per request, so the inverse of throughput. Logging grows
+// today's log, so it runs one batch per iteration on a cleared day.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HttpBenchmark {
+    static final int REQUESTS = 2000;
+
+    @Param({"64"})
+    public int clients;
+
+    private HttpScenarios scenarios;
+
+    @Setup
+    public void setUp() throws Exception {
+        scenarios = Scenarios.load(HttpScenarios.class, "Http");
+        scenarios.setUp(Files.createTempDirectory("calorie-bench"), clients);
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        scenarios.reset();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        scenarios.tearDown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    @OperationsPerInvocation(REQUESTS)
+    public void log() throws Exception {
+        scenarios.log(REQUESTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void day() throws Exception {
+        scenarios.day(REQUESTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void range() throws Exception {
+        scenarios.range(REQUESTS);
+    }
+}
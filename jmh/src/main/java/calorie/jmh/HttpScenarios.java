@@ -0,0 +1,20 @@
+package calorie.jmh;
+
+import java.nio.file.Path;
+
+// The HTTP API on a year of history, with clients threads each sending their share of the
+// requests back to back over a keep-alive connection.
+public interface HttpScenarios {
+    void setUp(Path workDir, int clients) throws Exception;
+
+    // Clears today's log, so each iteration logs onto the same empty day
+    void reset();
+
+    void log(int requests) throws Exception;
+
+    void day(int requests) throws Exception;
+
+    void range(int requests) throws Exception;
+
+    void tearDown() throws Exception;
+}
@@ -0,0 +1,18 @@
+package calorie.jmh;
+
+// JMH only generates code for benchmarks in a named package, and code in a named package
+// cannot refer to the app's classes in the default package. So each benchmark drives the
+// app through one of the interfaces here, implemented in BenchmarkScenarios (default
+// package, this module) and loaded by name.
+final class Scenarios {
+    private Scenarios() {
+    }
+
+    static <T> T load(Class<T> type, String name) {
+        try {
+            return type.cast(Class.forName("BenchmarkScenarios$" + name).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load benchmark scenarios " + name, e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+#!/bin/sh
+# Launches the tracker with an AppCDS (application class-data sharing) archive, so Swing,
+# the dashboard and JFreeChart classes are mapped from a pre-parsed archive instead of
+# being loaded and verified from the jar on every start. The archive is trained by one
+# unattended startup (-Dcalorie.exitAfterStartup=true) and retrained whenever the jar is
+# newer than it. Requires JDK 13+; set CALORIE_CLASSPATH if JFreeChart is a separate jar.
+# AppCDS only archives classes loaded from jars, not from class directories.
+#
+#   ./run.sh              start the tracker, training the archive first if needed
+#   ./run.sh --retrain    discard the archive and train it again
+
+cd "$(dirname "$0")" || exit 1
+
+CLASSPATH_JARS=${CALORIE_CLASSPATH:-CalorieTracker.jar}
+ARCHIVE=${CALORIE_CDS_ARCHIVE:-calorie-app.jsa}
+JAVA=${JAVA:-java}
+
+if [ "$1" = "--retrain" ]; then
+    rm -f "$ARCHIVE"
+    shift
+fi
+
+stale=0
+if [ ! -f "$ARCHIVE" ]; then
+    stale=1
+else
+    for jar in $(echo "$CLASSPATH_JARS" | tr ':' ' '); do
+        [ "$jar" -nt "$ARCHIVE" ] && stale=1
+    done
+fi
+
+if [ "$stale" = 1 ]; then
+    echo "Training class-data sharing archive $ARCHIVE..."
+    if ! "$JAVA" -XX:ArchiveClassesAtExit="$ARCHIVE" -Dcalorie.exitAfterStartup=true \
+            -cp "$CLASSPATH_JARS" App; then
+        echo "Training failed; starting without the archive"
+        rm -f "$ARCHIVE"
+    fi
+fi
+
+# -Xshare:auto falls back to normal class loading if the archive does not match this JDK
+if [ -f "$ARCHIVE" ]; then
+    exec "$JAVA" -XX:SharedArchiveFile="$ARCHIVE" -Xshare:auto -cp "$CLASSPATH_JARS" App "$@"
+fi
+exec "$JAVA" -cp "$CLASSPATH_JARS" App "$@"
@@ -0,0 +1,48 @@
+#!/bin/sh
+# Measures time-to-visible-frame with and without the AppCDS archive from run.sh.
+# Each run starts the tracker unattended (-Dcalorie.exitAfterStartup=true) and reads
+# the StartupTimer report (-Dcalorie.startupReport=true); the median of each phase is
+# printed per configuration. Needs a display, like the application itself.
+#
+#   ./startup-bench.sh [runs]    default 5 runs per configuration
+
+cd "$(dirname "$0")" || exit 1
+
+RUNS=${1:-5}
+CLASSPATH_JARS=${CALORIE_CLASSPATH:-CalorieTracker.jar}
+ARCHIVE=${CALORIE_CDS_ARCHIVE:-calorie-app.jsa}
+JAVA=${JAVA:-java}
+
+if [ ! -f "$ARCHIVE" ]; then
+    echo "Training class-data sharing archive $ARCHIVE..."
+    "$JAVA" -XX:ArchiveClassesAtExit="$ARCHIVE" -Dcalorie.exitAfterStartup=true \
+        -cp "$CLASSPATH_JARS" App > /dev/null || exit 1
+fi
+
+# Prints "<phase> <median ms>" for the "first frame" and "records loaded" phases
+bench() {
+    i=0
+    while [ "$i" -lt "$RUNS" ]; do
+        "$JAVA" "$@" -Dcalorie.startupReport=true -Dcalorie.exitAfterStartup=true \
+            -cp "$CLASSPATH_JARS" App
+        i=$((i + 1))
+    done | awk '
+        /^  first frame / { ff[nf++] = $3 }
+        /^  records loaded / { rl[nr++] = $3 }
+        function median(a, n,    i, j, t) {
+            for (i = 1; i < n; i++)
+                for (j = i; j > 0 && a[j - 1] > a[j]; j--) { t = a[j]; a[j] = a[j - 1]; a[j - 1] = t }
+            return n == 0 ? "n/a" : a[int(n / 2)]
+        }
+        END {
+            printf "  first frame     %s ms\n", median(ff, nf)
+            printf "  records loaded  %s ms\n", median(rl, nr)
+        }'
+}
+
+echo "Without archive (-Xshare:off):"
+bench -Xshare:off
+echo "Default JDK archive:"
+bench
+echo "AppCDS archive $ARCHIVE:"
+bench -XX:SharedArchiveFile="$ARCHIVE"